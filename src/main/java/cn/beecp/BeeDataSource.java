@@ -7,11 +7,13 @@
 package cn.beecp;
 
 import cn.beecp.pool.ConnectionPool;
+import cn.beecp.pool.ConnectionPoolJmxBean;
 import cn.beecp.pool.ConnectionPoolMonitorVo;
 import cn.beecp.pool.FastConnectionPool;
 import cn.beecp.pool.ProxyConnectionBase;
 import cn.beecp.xa.ProxyXaConnection;
 import cn.beecp.xa.RawXaConnectionFactory;
+import cn.beecp.xa.XaBranchAffinity;
 
 import javax.sql.DataSource;
 import javax.sql.XAConnection;
@@ -20,6 +22,8 @@ import java.io.PrintWriter;
 import java.sql.*;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 
@@ -61,6 +65,7 @@ public class BeeDataSource extends BeeDataSourceConfig implements DataSource, XA
     private ConnectionPool pool;
     private SQLException failedCause;
     private RawXaConnectionFactory xaConnectionFactory;
+    private XaBranchAffinity xaBranchAffinity;
 
     public BeeDataSource() {
     }
@@ -102,6 +107,60 @@ public class BeeDataSource extends BeeDataSourceConfig implements DataSource, XA
      */
     public final Connection getConnection() throws SQLException {
         if (inited) return pool.getConnection();
+        createPoolOnFirstBorrow();
+        return pool.getConnection();
+    }
+
+    /**
+     * borrow a connection from pool in timeout,which is used instead of 'maxWait'
+     *
+     * @param timeout max wait time,which is limited by request deadline of current thread
+     * @param unit    time unit of timeout
+     * @return If exists idle connection in pool,then return one;if not, waiting until other borrower release
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public final Connection getConnection(long timeout, TimeUnit unit) throws SQLException {
+        if (!inited) createPoolOnFirstBorrow();
+        return pool.getConnection(timeout, unit);
+    }
+
+    /**
+     * borrow a connection whose session state matches labels from pool
+     *
+     * @param labels session state labels
+     * @return If exists idle matched connection in pool,then return it;otherwise return one after applying labels
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public final Connection getConnection(ConnectionLabels labels) throws SQLException {
+        if (!inited) createPoolOnFirstBorrow();
+        return pool.getConnection(labels);
+    }
+
+    /**
+     * borrow a connection with priority from pool,when pool is saturated,returned
+     * connections are transferred to waiters of higher priority first
+     *
+     * @param priority borrower priority
+     * @return If exists idle connection in pool,then return one;if not, waiting until other borrower release
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public final Connection getConnection(BorrowPriority priority) throws SQLException {
+        if (!inited) createPoolOnFirstBorrow();
+        return pool.getConnection(priority);
+    }
+
+    /**
+     * set default borrow priority of current thread,which is used by 'getConnection()'
+     *
+     * @param priority borrower priority,null means normal
+     * @throws SQLException if failed to create pool
+     */
+    public void setThreadBorrowPriority(BorrowPriority priority) throws SQLException {
+        if (!inited) createPoolOnFirstBorrow();
+        pool.setThreadBorrowPriority(priority);
+    }
+
+    private void createPoolOnFirstBorrow() throws SQLException {
         if (wLock.tryLock()) {
             try {
                 if (!inited) {
@@ -123,13 +182,22 @@ public class BeeDataSource extends BeeDataSourceConfig implements DataSource, XA
                 rLock.unlock();
             }
         }
-        return pool.getConnection();
     }
 
     public XAConnection getXAConnection() throws SQLException {
         if (xaConnectionFactory == null) throw XaConnectionFactoryNotFound;
+        if (xaBranchAffinity != null) {//share connection of active branch on current thread
+            XAConnection xaCon = xaBranchAffinity.getActiveXaConnection();
+            if (xaCon != null) return xaCon;
+        }
         ProxyConnectionBase proxyCon = (ProxyConnectionBase) this.getConnection();
-        return new ProxyXaConnection(xaConnectionFactory.create(proxyCon.getRaw()), proxyCon);
+        try {
+            proxyCon.getRawXaConnection(xaConnectionFactory);//create it at first time
+        } catch (SQLException e) {
+            proxyCon.close();
+            throw e;
+        }
+        return xaBranchAffinity != null ? xaBranchAffinity.createXaConnection(proxyCon) : new ProxyXaConnection(proxyCon);
     }
 
     public Connection getConnection(String username, String password) throws SQLException {
@@ -207,6 +275,24 @@ public class BeeDataSource extends BeeDataSourceConfig implements DataSource, XA
         return pool.getMonitorVo();
     }
 
+    /**
+     * check pool whether saturated,upstream may shed load before borrowing when it is true
+     *
+     * @return true,waiters of pool reach max size or a standing wait queue is detected
+     */
+    public boolean isSaturated() {
+        ConnectionPool curPool = pool;
+        return curPool instanceof ConnectionPoolJmxBean && ((ConnectionPoolJmxBean) curPool).isSaturated();
+    }
+
+    //return using size of pool,called by routing data source to balance replicas
+    final int getConnUsingSize() {
+        ConnectionPool curPool = pool;
+        if (curPool == null) return 0;
+        if (curPool instanceof ConnectionPoolJmxBean) return ((ConnectionPoolJmxBean) curPool).getConnUsingSize();
+        return curPool.getMonitorVo().getUsingSize();
+    }
+
     /**
      * clear all pooled connections from pool
      *
@@ -227,6 +313,17 @@ public class BeeDataSource extends BeeDataSourceConfig implements DataSource, XA
         pool.clearAllConnections(force);
     }
 
+    /**
+     * replace all pooled connections gradually,borrowers are not failed during refreshing
+     *
+     * @return future of refreshing,its result is the count of replaced connections
+     * @throws SQLException if pool under datasource not be initialized
+     */
+    public Future<Integer> refreshAllConnections() throws SQLException {
+        if (pool == null) throw new SQLException("Connection pool not be initialized");
+        return pool.refreshAllConnections();
+    }
+
     /**
      * create a pool instance by specified class name in configuration,
      * and initialize the pool with configuration
@@ -244,6 +341,7 @@ public class BeeDataSource extends BeeDataSourceConfig implements DataSource, XA
                 xaConnectionFactory = createXAConnectionFactoryByClassName(xaConnectionFactoryClassName);
             }
         }
+        if (config.isXaBranchAffinity()) xaBranchAffinity = new XaBranchAffinity();
         //2:create pool instance and init it with config
         ConnectionPool pool = createPoolInstanceByConfig(config);
         pool.init(config);
@@ -8,12 +8,15 @@ package cn.beecp;
 
 import cn.beecp.pool.DataSourceConnectionFactory;
 import cn.beecp.pool.DriverConnectionFactory;
+import cn.beecp.pool.MultiHostConnectionFactory;
+import cn.beecp.pool.PoolGroup;
 import cn.beecp.xa.RawXaConnectionFactory;
 
 import javax.sql.DataSource;
 import java.io.File;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.file.Files;
@@ -47,6 +50,16 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
     private String jdbcUrl;
     //jdbc driver class name
     private String driverClassName;
+    //jdbc urls of multiple hosts separated by '|',connections are created on them by multi-host factory
+    private String hostJdbcUrls;
+    //host select policy of multi-host factory:roundRobin or leastConnections
+    private String hostSelectPolicy = MultiHostConnectionFactory.POLICY_ROUND_ROBIN;
+    //milliseconds:backoff of a host after its first connect failure,doubled on next failure
+    private long hostDownBackoff = 1000L;
+    //milliseconds:max backoff of a failed host
+    private long hostDownMaxBackoff = 30000L;
+    //milliseconds:delay to race a second host in connection creation,zero means not hedge
+    private long hedgeCreateDelay;
 
     //connection default value:catalog <code>Connection.setAutoCommit(String)</code>
     private String defaultCatalog;
@@ -89,6 +102,52 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
     private boolean forceCloseUsingOnClear;
     //milliseconds:delay time for next clear pooled connections when exists using connections and 'forceCloseUsingOnClear' is false
     private long delayTimeForNextClear = 3000L;
+    //milliseconds:delay time for next replacement on refreshing pooled connections
+    private long delayTimeForNextRefresh = 1000L;
+    //continuous connection creation failures to open circuit breaker,zero means disabled
+    private int circuitBreakerFailureThreshold;
+    //milliseconds:initial delay of probe creation when circuit breaker opened,doubled after each failed probe
+    private long circuitBreakerProbeDelay = 1000L;
+    //milliseconds:max delay of probe creation
+    private long circuitBreakerProbeMaxDelay = 30000L;
+    //max rate of connection creation(per second),zero means unlimited
+    private double connectionCreateRate;
+    //max burst size of connection creation when rate limited
+    private int connectionCreateBurst = 1;
+    //indicator,whether reset dirty properties by driver special way(one round trip for MySQL Connector/J)
+    private boolean enableDriverAwareReset;
+    //indicator,whether skip rollback on return when only read-only sql executed on a read-only connection in manual-commit mode
+    private boolean skipReadOnlyRollback;
+    //indicator,whether mirror autoCommit,isolation and readOnly in pool(session state changed by sql is not visible,so don't enable it in that case)
+    private boolean mirrorSessionState;
+    //indicator,whether defer 'setAutoCommit' to first statement,and skip 'commit/rollback' without statement execution
+    private boolean lazyTransactionBegin;
+    //indicator,whether call JDBC4.3 'beginRequest/endRequest' on borrow and return when driver implements them
+    private boolean enableRequestBoundary;
+    //indicator,whether skip 'clearWarnings' on return when 'endRequest' is called(only for drivers clearing warnings in 'endRequest'),session properties are always reset by pool
+    private boolean skipClearWarningsOnRequestEnd;
+    //indicator,whether reset dirty connections by worker threads after returned,then 'close' method returns immediately
+    private boolean asyncResetOnReturn;
+    //size of worker threads to reset returned connections
+    private int asyncResetThreadSize = 2;
+    //indicator,whether XaConnections got in an active transaction branch on same thread share the enlisted connection
+    private boolean xaBranchAffinity;
+    //indicator,whether adjust semaphore size on borrow wait time and hold time in runtime
+    private boolean adaptiveBorrowSemaphore;
+    //min size of adaptive semaphore
+    private int borrowSemaphoreMinSize = 1;
+    //max size of adaptive semaphore,zero means 'maxActive'
+    private int borrowSemaphoreMaxSize;
+    //milliseconds:interval to adjust adaptive semaphore size
+    private long borrowSemaphoreAdjustInterval = 1000L;
+    //size of connections reserved for high priority borrowers,others can hold at most(maxActive - this size)
+    private int highPriorityReservedSize;
+    //max size of borrowers waiting for connection,borrowers over it are rejected immediately,zero means unlimited
+    private int maxWaiters;
+    //milliseconds:target wait time of CoDel,when min wait time over it in an interval,waiting is limited in it,zero means disabled
+    private long codelTargetWait;
+    //milliseconds:interval of CoDel to check min wait time
+    private long codelInterval = 100L;
 
 
     //physical JDBC Connection factory
@@ -99,6 +158,40 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
     private RawXaConnectionFactory xaConnectionFactory;
     //xaConnection Factory ClassName
     private String xaConnectionFactoryClassName;
+    //sql execution interceptor,called by statement proxies after each execution
+    private SqlExecuteInterceptor sqlExecuteInterceptor;
+    //sql execution interceptor class name
+    private String sqlExecuteInterceptorClassName;
+    //listener of pool saturation state
+    private PoolSaturationListener saturationListener;
+    //indicator,whether remove connections on close after fatal errors,which are checked by exception classifier
+    private boolean enableFatalErrorEviction;
+    //classifier of fatal errors,default classifier(by SQLState and vendor code) is used when fatal error eviction enabled
+    private ExceptionClassifier exceptionClassifier;
+    //classifier class name of fatal errors
+    private String exceptionClassifierClassName;
+    //count of fatal errors in a window to trigger a validation sweep of idle connections,zero means no sweep
+    private int fatalErrorBurstSize = 3;
+    //milliseconds:window of fatal error burst
+    private long fatalErrorBurstWindow = 1000L;
+    //indicator,whether collect execution statistic of each normalized sql
+    private boolean enableSqlStatistic;
+    //max size of sql statistics kept in pool,min count one is evicted when full
+    private int sqlStatisticMaxSize = 500;
+    //size of top sql statistics shown in jmx
+    private int sqlStatisticTopSize = 10;
+    //threshold of slow sql(milliseconds),execution over it is written to slow sql log,zero means disabled
+    private long slowSqlThreshold;
+    //sample rate of slow sql log,value range:(0,1]
+    private double slowSqlLogSampleRate = 1.0D;
+    //indicator,whether capture bind parameters of prepared statement for slow sql log
+    private boolean slowSqlLogParameters = true;
+    //queue size of slow sql log,records are dropped when full
+    private int slowSqlLogQueueSize = 1024;
+    //pool group,which limits total size of connections in its member pools
+    private PoolGroup poolGroup;
+    //reserved min size of pool in group,it can be always created even if group is full
+    private int poolGroupMinSize;
     //connection extra properties
     private Properties connectProperties = new Properties();
     //pool implementation class name
@@ -202,6 +295,55 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
         this.jdbcUrl = trimString(jdbcUrl);
     }
 
+    @Override
+    public String getHostJdbcUrls() {
+        return hostJdbcUrls;
+    }
+
+    public void setHostJdbcUrls(String hostJdbcUrls) {
+        this.hostJdbcUrls = trimString(hostJdbcUrls);
+    }
+
+    @Override
+    public String getHostSelectPolicy() {
+        return hostSelectPolicy;
+    }
+
+    public void setHostSelectPolicy(String hostSelectPolicy) {
+        if (!isBlank(hostSelectPolicy))
+            this.hostSelectPolicy = trimString(hostSelectPolicy);
+    }
+
+    @Override
+    public long getHostDownBackoff() {
+        return hostDownBackoff;
+    }
+
+    public void setHostDownBackoff(long hostDownBackoff) {
+        if (hostDownBackoff > 0)
+            this.hostDownBackoff = hostDownBackoff;
+    }
+
+    @Override
+    public long getHostDownMaxBackoff() {
+        return hostDownMaxBackoff;
+    }
+
+    public void setHostDownMaxBackoff(long hostDownMaxBackoff) {
+        if (hostDownMaxBackoff > 0)
+            this.hostDownMaxBackoff = hostDownMaxBackoff;
+    }
+
+    @Override
+    public long getHedgeCreateDelay() {
+        return hedgeCreateDelay;
+    }
+
+    public void setHedgeCreateDelay(long hedgeCreateDelay) {
+        if (hedgeCreateDelay >= 0)
+            this.hedgeCreateDelay = hedgeCreateDelay;
+    }
+
     @Override
     public String getDriverClassName() {
         return driverClassName;
@@ -405,6 +547,227 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
             this.delayTimeForNextClear = delayTimeForNextClear;
     }
 
+    @Override
+    public long getDelayTimeForNextRefresh() {
+        return delayTimeForNextRefresh;
+    }
+
+    public void setDelayTimeForNextRefresh(long delayTimeForNextRefresh) {
+        if (delayTimeForNextRefresh >= 0)
+            this.delayTimeForNextRefresh = delayTimeForNextRefresh;
+    }
+
+    @Override
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        if (circuitBreakerFailureThreshold >= 0)
+            this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    @Override
+    public long getCircuitBreakerProbeDelay() {
+        return circuitBreakerProbeDelay;
+    }
+
+    public void setCircuitBreakerProbeDelay(long circuitBreakerProbeDelay) {
+        if (circuitBreakerProbeDelay > 0)
+            this.circuitBreakerProbeDelay = circuitBreakerProbeDelay;
+    }
+
+    @Override
+    public long getCircuitBreakerProbeMaxDelay() {
+        return circuitBreakerProbeMaxDelay;
+    }
+
+    public void setCircuitBreakerProbeMaxDelay(long circuitBreakerProbeMaxDelay) {
+        if (circuitBreakerProbeMaxDelay > 0)
+            this.circuitBreakerProbeMaxDelay = circuitBreakerProbeMaxDelay;
+    }
+
+    @Override
+    public double getConnectionCreateRate() {
+        return connectionCreateRate;
+    }
+
+    public void setConnectionCreateRate(double connectionCreateRate) {
+        if (connectionCreateRate >= 0)
+            this.connectionCreateRate = connectionCreateRate;
+    }
+
+    @Override
+    public int getConnectionCreateBurst() {
+        return connectionCreateBurst;
+    }
+
+    public void setConnectionCreateBurst(int connectionCreateBurst) {
+        if (connectionCreateBurst > 0)
+            this.connectionCreateBurst = connectionCreateBurst;
+    }
+
+    @Override
+    public boolean isEnableDriverAwareReset() {
+        return enableDriverAwareReset;
+    }
+
+    public void setEnableDriverAwareReset(boolean enableDriverAwareReset) {
+        this.enableDriverAwareReset = enableDriverAwareReset;
+    }
+
+    @Override
+    public boolean isSkipReadOnlyRollback() {
+        return skipReadOnlyRollback;
+    }
+
+    public void setSkipReadOnlyRollback(boolean skipReadOnlyRollback) {
+        this.skipReadOnlyRollback = skipReadOnlyRollback;
+    }
+
+    @Override
+    public boolean isMirrorSessionState() {
+        return mirrorSessionState;
+    }
+
+    public void setMirrorSessionState(boolean mirrorSessionState) {
+        this.mirrorSessionState = mirrorSessionState;
+    }
+
+    @Override
+    public boolean isLazyTransactionBegin() {
+        return lazyTransactionBegin;
+    }
+
+    public void setLazyTransactionBegin(boolean lazyTransactionBegin) {
+        this.lazyTransactionBegin = lazyTransactionBegin;
+    }
+
+    @Override
+    public boolean isEnableRequestBoundary() {
+        return enableRequestBoundary;
+    }
+
+    public void setEnableRequestBoundary(boolean enableRequestBoundary) {
+        this.enableRequestBoundary = enableRequestBoundary;
+    }
+
+    @Override
+    public boolean isSkipClearWarningsOnRequestEnd() {
+        return skipClearWarningsOnRequestEnd;
+    }
+
+    public void setSkipClearWarningsOnRequestEnd(boolean skipClearWarningsOnRequestEnd) {
+        this.skipClearWarningsOnRequestEnd = skipClearWarningsOnRequestEnd;
+    }
+
+    @Override
+    public boolean isAsyncResetOnReturn() {
+        return asyncResetOnReturn;
+    }
+
+    public void setAsyncResetOnReturn(boolean asyncResetOnReturn) {
+        this.asyncResetOnReturn = asyncResetOnReturn;
+    }
+
+    @Override
+    public int getAsyncResetThreadSize() {
+        return asyncResetThreadSize;
+    }
+
+    public void setAsyncResetThreadSize(int asyncResetThreadSize) {
+        if (asyncResetThreadSize > 0)
+            this.asyncResetThreadSize = asyncResetThreadSize;
+    }
+
+    @Override
+    public boolean isXaBranchAffinity() {
+        return xaBranchAffinity;
+    }
+
+    public void setXaBranchAffinity(boolean xaBranchAffinity) {
+        this.xaBranchAffinity = xaBranchAffinity;
+    }
+
+    @Override
+    public boolean isAdaptiveBorrowSemaphore() {
+        return adaptiveBorrowSemaphore;
+    }
+
+    public void setAdaptiveBorrowSemaphore(boolean adaptiveBorrowSemaphore) {
+        this.adaptiveBorrowSemaphore = adaptiveBorrowSemaphore;
+    }
+
+    @Override
+    public int getBorrowSemaphoreMinSize() {
+        return borrowSemaphoreMinSize;
+    }
+
+    public void setBorrowSemaphoreMinSize(int borrowSemaphoreMinSize) {
+        if (borrowSemaphoreMinSize > 0)
+            this.borrowSemaphoreMinSize = borrowSemaphoreMinSize;
+    }
+
+    @Override
+    public int getBorrowSemaphoreMaxSize() {
+        return borrowSemaphoreMaxSize;
+    }
+
+    public void setBorrowSemaphoreMaxSize(int borrowSemaphoreMaxSize) {
+        if (borrowSemaphoreMaxSize >= 0)
+            this.borrowSemaphoreMaxSize = borrowSemaphoreMaxSize;
+    }
+
+    @Override
+    public long getBorrowSemaphoreAdjustInterval() {
+        return borrowSemaphoreAdjustInterval;
+    }
+
+    public void setBorrowSemaphoreAdjustInterval(long borrowSemaphoreAdjustInterval) {
+        if (borrowSemaphoreAdjustInterval > 0)
+            this.borrowSemaphoreAdjustInterval = borrowSemaphoreAdjustInterval;
+    }
+
+    @Override
+    public int getHighPriorityReservedSize() {
+        return highPriorityReservedSize;
+    }
+
+    public void setHighPriorityReservedSize(int highPriorityReservedSize) {
+        if (highPriorityReservedSize >= 0)
+            this.highPriorityReservedSize = highPriorityReservedSize;
+    }
+
+    @Override
+    public int getMaxWaiters() {
+        return maxWaiters;
+    }
+
+    public void setMaxWaiters(int maxWaiters) {
+        if (maxWaiters >= 0)
+            this.maxWaiters = maxWaiters;
+    }
+
+    @Override
+    public long getCodelTargetWait() {
+        return codelTargetWait;
+    }
+
+    public void setCodelTargetWait(long codelTargetWait) {
+        if (codelTargetWait >= 0)
+            this.codelTargetWait = codelTargetWait;
+    }
+
+    @Override
+    public long getCodelInterval() {
+        return codelInterval;
+    }
+
+    public void setCodelInterval(long codelInterval) {
+        if (codelInterval > 0)
+            this.codelInterval = codelInterval;
+    }
+
     public RawConnectionFactory getConnectionFactory() {
         return connectionFactory;
     }
@@ -438,6 +801,167 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
         this.xaConnectionFactoryClassName = trimString(xaConnectionFactoryClassName);
     }
 
+    public SqlExecuteInterceptor getSqlExecuteInterceptor() {
+        return sqlExecuteInterceptor;
+    }
+
+    public void setSqlExecuteInterceptor(SqlExecuteInterceptor sqlExecuteInterceptor) {
+        this.sqlExecuteInterceptor = sqlExecuteInterceptor;
+    }
+
+    public PoolSaturationListener getSaturationListener() {
+        return saturationListener;
+    }
+
+    public void setSaturationListener(PoolSaturationListener saturationListener) {
+        this.saturationListener = saturationListener;
+    }
+
+    @Override
+    public boolean isEnableFatalErrorEviction() {
+        return enableFatalErrorEviction;
+    }
+
+    public void setEnableFatalErrorEviction(boolean enableFatalErrorEviction) {
+        this.enableFatalErrorEviction = enableFatalErrorEviction;
+    }
+
+    public ExceptionClassifier getExceptionClassifier() {
+        return exceptionClassifier;
+    }
+
+    public void setExceptionClassifier(ExceptionClassifier exceptionClassifier) {
+        this.exceptionClassifier = exceptionClassifier;
+    }
+
+    @Override
+    public String getExceptionClassifierClassName() {
+        return exceptionClassifierClassName;
+    }
+
+    public void setExceptionClassifierClassName(String exceptionClassifierClassName) {
+        this.exceptionClassifierClassName = trimString(exceptionClassifierClassName);
+    }
+
+    @Override
+    public int getFatalErrorBurstSize() {
+        return fatalErrorBurstSize;
+    }
+
+    public void setFatalErrorBurstSize(int fatalErrorBurstSize) {
+        if (fatalErrorBurstSize >= 0)
+            this.fatalErrorBurstSize = fatalErrorBurstSize;
+    }
+
+    @Override
+    public long getFatalErrorBurstWindow() {
+        return fatalErrorBurstWindow;
+    }
+
+    public void setFatalErrorBurstWindow(long fatalErrorBurstWindow) {
+        if (fatalErrorBurstWindow > 0)
+            this.fatalErrorBurstWindow = fatalErrorBurstWindow;
+    }
+
+    @Override
+    public String getSqlExecuteInterceptorClassName() {
+        return sqlExecuteInterceptorClassName;
+    }
+
+    public void setSqlExecuteInterceptorClassName(String sqlExecuteInterceptorClassName) {
+        this.sqlExecuteInterceptorClassName = trimString(sqlExecuteInterceptorClassName);
+    }
+
+    @Override
+    public boolean isEnableSqlStatistic() {
+        return enableSqlStatistic;
+    }
+
+    public void setEnableSqlStatistic(boolean enableSqlStatistic) {
+        this.enableSqlStatistic = enableSqlStatistic;
+    }
+
+    @Override
+    public int getSqlStatisticMaxSize() {
+        return sqlStatisticMaxSize;
+    }
+
+    public void setSqlStatisticMaxSize(int sqlStatisticMaxSize) {
+        if (sqlStatisticMaxSize > 0)
+            this.sqlStatisticMaxSize = sqlStatisticMaxSize;
+    }
+
+    @Override
+    public int getSqlStatisticTopSize() {
+        return sqlStatisticTopSize;
+    }
+
+    public void setSqlStatisticTopSize(int sqlStatisticTopSize) {
+        if (sqlStatisticTopSize > 0)
+            this.sqlStatisticTopSize = sqlStatisticTopSize;
+    }
+
+    @Override
+    public long getSlowSqlThreshold() {
+        return slowSqlThreshold;
+    }
+
+    public void setSlowSqlThreshold(long slowSqlThreshold) {
+        if (slowSqlThreshold >= 0)
+            this.slowSqlThreshold = slowSqlThreshold;
+    }
+
+    @Override
+    public double getSlowSqlLogSampleRate() {
+        return slowSqlLogSampleRate;
+    }
+
+    public void setSlowSqlLogSampleRate(double slowSqlLogSampleRate) {
+        if (slowSqlLogSampleRate > 0 && slowSqlLogSampleRate <= 1)
+            this.slowSqlLogSampleRate = slowSqlLogSampleRate;
+    }
+
+    @Override
+    public boolean isSlowSqlLogParameters() {
+        return slowSqlLogParameters;
+    }
+
+    public void setSlowSqlLogParameters(boolean slowSqlLogParameters) {
+        this.slowSqlLogParameters = slowSqlLogParameters;
+    }
+
+    @Override
+    public int getSlowSqlLogQueueSize() {
+        return slowSqlLogQueueSize;
+    }
+
+    public void setSlowSqlLogQueueSize(int slowSqlLogQueueSize) {
+        if (slowSqlLogQueueSize > 0)
+            this.slowSqlLogQueueSize = slowSqlLogQueueSize;
+    }
+
+    public PoolGroup getPoolGroup() {
+        return poolGroup;
+    }
+
+    public void setPoolGroup(PoolGroup poolGroup) {
+        this.poolGroup = poolGroup;
+    }
+
+    @Override
+    public int getPoolGroupMinSize() {
+        return poolGroupMinSize;
+    }
+
+    public void setPoolGroupMinSize(int poolGroupMinSize) {
+        if (poolGroupMinSize >= 0)
+            this.poolGroupMinSize = poolGroupMinSize;
+    }
+
+    public Object getConnectProperty(String key) {
+        return connectProperties.get(key);
+    }
+
     public void removeConnectProperty(String key) {
         if (!isBlank(key))
             connectProperties.remove(key);
@@ -543,6 +1067,32 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
             throw new BeeDataSourceConfigException("holdTimeout must be greater than zero");
         if (this.maxWait <= 0)
             throw new BeeDataSourceConfigException("maxWait must be greater than zero");
+        if (this.sqlStatisticMaxSize <= 0)
+            throw new BeeDataSourceConfigException("sqlStatisticMaxSize must be greater than zero");
+        if (this.slowSqlThreshold < 0)
+            throw new BeeDataSourceConfigException("slowSqlThreshold cant be less than zero");
+        if (this.slowSqlLogSampleRate <= 0 || this.slowSqlLogSampleRate > 1)
+            throw new BeeDataSourceConfigException("slowSqlLogSampleRate must be in range (0,1]");
+        if (this.slowSqlLogQueueSize <= 0)
+            throw new BeeDataSourceConfigException("slowSqlLogQueueSize must be greater than zero");
+        if (this.poolGroupMinSize > maxActive)
+            throw new BeeDataSourceConfigException("poolGroupMinSize must not be greater than maxActive");
+        if (this.circuitBreakerProbeMaxDelay < circuitBreakerProbeDelay)
+            throw new BeeDataSourceConfigException("circuitBreakerProbeMaxDelay must not be less than circuitBreakerProbeDelay");
+        if (this.connectionCreateRate < 0)
+            throw new BeeDataSourceConfigException("connectionCreateRate cant be less than zero");
+        if (this.connectionCreateBurst <= 0)
+            throw new BeeDataSourceConfigException("connectionCreateBurst must be greater than zero");
+        if (this.asyncResetThreadSize <= 0)
+            throw new BeeDataSourceConfigException("asyncResetThreadSize must be greater than zero");
+        if (this.borrowSemaphoreMaxSize > 0 && this.borrowSemaphoreMinSize > borrowSemaphoreMaxSize)
+            throw new BeeDataSourceConfigException("borrowSemaphoreMinSize must not be greater than borrowSemaphoreMaxSize");
+        if (this.highPriorityReservedSize >= maxActive)
+            throw new BeeDataSourceConfigException("highPriorityReservedSize must be less than maxActive");
+        if (!MultiHostConnectionFactory.POLICY_ROUND_ROBIN.equals(hostSelectPolicy) && !MultiHostConnectionFactory.POLICY_LEAST_CONNECTIONS.equals(hostSelectPolicy))
+            throw new BeeDataSourceConfigException("hostSelectPolicy must be one of 'roundRobin','leastConnections'");
+        if (this.hostDownMaxBackoff < hostDownBackoff)
+            throw new BeeDataSourceConfigException("hostDownMaxBackoff must not be less than hostDownBackoff");
         //fix issue:#1 The check of validationQuerySQL has logic problem. Chris-2019-05-01 begin
         //if (this.validationQuerySQL != null && validationQuerySQL.trim().length() == 0) {
         if (isBlank(this.connectionTestSql))
@@ -560,11 +1110,17 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
 
         //try to create connection factory
         RawConnectionFactory connectionFactory = tryCreateConnectionFactory();
+        //try to create sql execution interceptor
+        SqlExecuteInterceptor sqlExecuteInterceptor = tryCreateSqlExecuteInterceptor();
+        //try to create exception classifier
+        ExceptionClassifier exceptionClassifier = tryCreateExceptionClassifier();
 
         BeeDataSourceConfig configCopy = new BeeDataSourceConfig();
         this.copyTo(configCopy);
 
         configCopy.setConnectionFactory(connectionFactory);
+        configCopy.setSqlExecuteInterceptor(sqlExecuteInterceptor);
+        configCopy.setExceptionClassifier(exceptionClassifier);
         configCopy.setDefaultTransactionIsolationCode(transactionIsolationCode);
         return configCopy;
     }
@@ -647,18 +1203,29 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
         if (connectionFactory != null) return connectionFactory;
 
         if (isBlank(connectionFactoryClassName)) {
-            if (isBlank(jdbcUrl))
+            String[] hostUrls = null;
+            if (!isBlank(hostJdbcUrls)) {
+                List<String> urlList = new ArrayList<String>();
+                for (String url : hostJdbcUrls.split("\\|"))
+                    if (!isBlank(url)) urlList.add(url.trim());
+                if (urlList.isEmpty())
+                    throw new BeeDataSourceConfigException("hostJdbcUrls can't be empty");
+                hostUrls = urlList.toArray(new String[urlList.size()]);
+            } else if (isBlank(jdbcUrl)) {
                 throw new BeeDataSourceConfigException("jdbcUrl can't be null");
+            }
 
             Driver connectDriver = null;
             if (!isBlank(driverClassName))
                 connectDriver = loadJdbcDriver(driverClassName);
-            else if (!isBlank(jdbcUrl))
-                connectDriver = DriverManager.getDriver(jdbcUrl);
+            else
+                connectDriver = DriverManager.getDriver(hostUrls != null ? hostUrls[0] : jdbcUrl);
             if (connectDriver == null)
                 throw new BeeDataSourceConfigException("Failed to load jdbc Driver:" + driverClassName);
-            if (!connectDriver.acceptsURL(jdbcUrl))
-                throw new BeeDataSourceConfigException("jdbcUrl(" + jdbcUrl + ")can not match driver:" + connectDriver.getClass().getName());
+            for (String url : hostUrls != null ? hostUrls : new String[]{jdbcUrl}) {
+                if (!connectDriver.acceptsURL(url))
+                    throw new BeeDataSourceConfigException("jdbcUrl(" + url + ")can not match driver:" + connectDriver.getClass().getName());
+            }
 
             Properties connectProperties = new Properties();
             connectProperties.putAll(this.connectProperties);
@@ -666,6 +1233,9 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
                 connectProperties.put("user", username);
             if (!isBlank(password))
                 connectProperties.put("password", password);
+            if (hostUrls != null)
+                return new MultiHostConnectionFactory(hostUrls, connectDriver, connectProperties, hostSelectPolicy,
+                        hostDownBackoff, hostDownMaxBackoff, hedgeCreateDelay);
             return new DriverConnectionFactory(jdbcUrl, connectDriver, connectProperties);
         } else {
             try {
@@ -703,5 +1273,53 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJmxBean {
             }
         }
     }
+
+    private final SqlExecuteInterceptor tryCreateSqlExecuteInterceptor() throws BeeDataSourceConfigException {
+        if (sqlExecuteInterceptor != null) return sqlExecuteInterceptor;
+        if (isBlank(sqlExecuteInterceptorClassName)) return null;
+
+        try {
+            Class<?> interceptorClass = Class.forName(sqlExecuteInterceptorClassName, true, BeeDataSourceConfig.class.getClassLoader());
+            if (SqlExecuteInterceptor.class.isAssignableFrom(interceptorClass)) {
+                return (SqlExecuteInterceptor) interceptorClass.getDeclaredConstructor().newInstance();
+            } else {
+                throw new BeeDataSourceConfigException("Error sql execute interceptor class,must implement '" + SqlExecuteInterceptor.class.getName() + "' interface");
+            }
+        } catch (ClassNotFoundException e) {
+            throw new BeeDataSourceConfigException("Not found sql execute interceptor class:" + sqlExecuteInterceptorClassName);
+        } catch (InstantiationException e) {
+            throw new BeeDataSourceConfigException("Failed to instantiate sql execute interceptor class:" + sqlExecuteInterceptorClassName, e);
+        } catch (IllegalAccessException e) {
+            throw new BeeDataSourceConfigException("Failed to instantiate sql execute interceptor class:" + sqlExecuteInterceptorClassName, e);
+        } catch (NoSuchMethodException e) {
+            throw new BeeDataSourceConfigException("Not found default constructor of sql execute interceptor class:" + sqlExecuteInterceptorClassName, e);
+        } catch (InvocationTargetException e) {
+            throw new BeeDataSourceConfigException("Failed to instantiate sql execute interceptor class:" + sqlExecuteInterceptorClassName, e.getTargetException());
+        }
+    }
+
+    private final ExceptionClassifier tryCreateExceptionClassifier() throws BeeDataSourceConfigException {
+        if (exceptionClassifier != null) return exceptionClassifier;
+        if (isBlank(exceptionClassifierClassName)) return null;
+
+        try {
+            Class<?> classifierClass = Class.forName(exceptionClassifierClassName, true, BeeDataSourceConfig.class.getClassLoader());
+            if (ExceptionClassifier.class.isAssignableFrom(classifierClass)) {
+                return (ExceptionClassifier) classifierClass.getDeclaredConstructor().newInstance();
+            } else {
+                throw new BeeDataSourceConfigException("Error exception classifier class,must implement '" + ExceptionClassifier.class.getName() + "' interface");
+            }
+        } catch (ClassNotFoundException e) {
+            throw new BeeDataSourceConfigException("Not found exception classifier class:" + exceptionClassifierClassName);
+        } catch (InstantiationException e) {
+            throw new BeeDataSourceConfigException("Failed to instantiate exception classifier class:" + exceptionClassifierClassName, e);
+        } catch (IllegalAccessException e) {
+            throw new BeeDataSourceConfigException("Failed to instantiate exception classifier class:" + exceptionClassifierClassName, e);
+        } catch (NoSuchMethodException e) {
+            throw new BeeDataSourceConfigException("Not found default constructor of exception classifier class:" + exceptionClassifierClassName, e);
+        } catch (InvocationTargetException e) {
+            throw new BeeDataSourceConfigException("Failed to instantiate exception classifier class:" + exceptionClassifierClassName, e.getTargetException());
+        }
+    }
 }
 
@@ -19,10 +19,46 @@ public interface BeeDataSourceConfigJmxBean {
 
     String getUrl();
 
+    String getHostJdbcUrls();
+
+    String getHostSelectPolicy();
+
+    long getHostDownBackoff();
+
+    long getHostDownMaxBackoff();
+
+    long getHedgeCreateDelay();
+
     String getDriverClassName();
 
     String getConnectionFactoryClassName();
 
+    String getSqlExecuteInterceptorClassName();
+
+    boolean isEnableFatalErrorEviction();
+
+    String getExceptionClassifierClassName();
+
+    int getFatalErrorBurstSize();
+
+    long getFatalErrorBurstWindow();
+
+    boolean isEnableSqlStatistic();
+
+    int getSqlStatisticMaxSize();
+
+    int getSqlStatisticTopSize();
+
+    long getSlowSqlThreshold();
+
+    double getSlowSqlLogSampleRate();
+
+    boolean isSlowSqlLogParameters();
+
+    int getSlowSqlLogQueueSize();
+
+    int getPoolGroupMinSize();
+
     String getPoolName();
 
     boolean isFairMode();
@@ -59,6 +95,52 @@ public interface BeeDataSourceConfigJmxBean {
 
     long getDelayTimeForNextClear();
 
+    long getDelayTimeForNextRefresh();
+
+    int getCircuitBreakerFailureThreshold();
+
+    long getCircuitBreakerProbeDelay();
+
+    long getCircuitBreakerProbeMaxDelay();
+
+    double getConnectionCreateRate();
+
+    int getConnectionCreateBurst();
+
+    boolean isEnableDriverAwareReset();
+
+    boolean isSkipReadOnlyRollback();
+
+    boolean isMirrorSessionState();
+
+    boolean isLazyTransactionBegin();
+
+    boolean isEnableRequestBoundary();
+
+    boolean isSkipClearWarningsOnRequestEnd();
+
+    boolean isAsyncResetOnReturn();
+
+    int getAsyncResetThreadSize();
+
+    boolean isXaBranchAffinity();
+
+    boolean isAdaptiveBorrowSemaphore();
+
+    int getBorrowSemaphoreMinSize();
+
+    int getBorrowSemaphoreMaxSize();
+
+    long getBorrowSemaphoreAdjustInterval();
+
+    int getHighPriorityReservedSize();
+
+    int getMaxWaiters();
+
+    long getCodelTargetWait();
+
+    long getCodelInterval();
+
     long getIdleCheckTimeInterval();
 
     String getPoolImplementClassName();
@@ -0,0 +1,324 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+import cn.beecp.pool.PoolStaticCenter.ConnectionCreateFailedException;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static cn.beecp.pool.PoolStaticCenter.ConnectionClosedException;
+import static cn.beecp.pool.PoolStaticCenter.commonLog;
+
+/**
+ * Routing DataSource,which owns one primary pool and some replica pools.
+ * 1) connection is borrowed from replica when read-only hint is set in current thread
+ * 2) when lazy routing enabled,a lazy connection is returned and its target is borrowed
+ * at first use,so 'setReadOnly(true)' before first use routes it to replica
+ * <p>
+ * The replica with least using connections is selected,a replica is ejected after some
+ * continuous creation failures and readmitted after eject time,if no replica available,
+ * read-only connections are borrowed from primary.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public class BeeRoutingDataSource implements DataSource {
+    private static final Class<?>[] ConnectionInterfaces = new Class<?>[]{Connection.class};
+    private final BeeDataSource primary;
+    private final ReplicaNode[] replicas;
+    private final ThreadLocal<Boolean> readOnlyHint = new ThreadLocal<Boolean>();
+    //continuous creation failures to eject a replica
+    private int replicaMaxCreateFailures = 3;
+    //milliseconds:ejected time of a replica
+    private long replicaEjectTime = 30000L;
+    //indicator,whether return lazy connection to route by 'setReadOnly' before first use
+    private boolean lazyRouting;
+
+    public BeeRoutingDataSource(BeeDataSourceConfig primaryConfig, BeeDataSourceConfig... replicaConfigs) {
+        this(new BeeDataSource(primaryConfig), createDataSources(replicaConfigs));
+    }
+
+    public BeeRoutingDataSource(BeeDataSource primary, BeeDataSource... replicas) {
+        if (primary == null) throw new IllegalArgumentException("Primary data source can't be null");
+        this.primary = primary;
+        int size = replicas == null ? 0 : replicas.length;
+        this.replicas = new ReplicaNode[size];
+        for (int i = 0; i < size; i++) {
+            if (replicas[i] == null) throw new IllegalArgumentException("Replica data source can't be null");
+            this.replicas[i] = new ReplicaNode(replicas[i], i);
+        }
+    }
+
+    private static BeeDataSource[] createDataSources(BeeDataSourceConfig[] configs) {
+        int size = configs == null ? 0 : configs.length;
+        BeeDataSource[] dataSources = new BeeDataSource[size];
+        for (int i = 0; i < size; i++)
+            dataSources[i] = new BeeDataSource(configs[i]);
+        return dataSources;
+    }
+
+    /*******************************************************************************************
+     *                                                                                         *
+     *                         Below are override methods                                      *
+     *                                                                                         *
+     ******************************************************************************************/
+
+    /**
+     * borrow a connection,from replica when read-only hint set in current thread,
+     * or a lazy connection when lazy routing enabled,otherwise from primary
+     *
+     * @return borrowed connection
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public Connection getConnection() throws SQLException {
+        if (Boolean.TRUE.equals(readOnlyHint.get())) return getReadOnlyConnection();
+        if (lazyRouting)
+            return (Connection) Proxy.newProxyInstance(BeeRoutingDataSource.class.getClassLoader(),
+                    ConnectionInterfaces, new LazyConnectionHandler());
+        return primary.getConnection();
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Not support");
+    }
+
+    public PrintWriter getLogWriter() throws SQLException {
+        throw new SQLFeatureNotSupportedException("Not supported");
+    }
+
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Not supported");
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("Not supported");
+    }
+
+    public int getLoginTimeout() throws SQLException {
+        throw new SQLFeatureNotSupportedException("Not supported");
+    }
+
+    public void setLoginTimeout(int seconds) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Not supported");
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this))
+            return iface.cast(this);
+        else
+            throw new SQLException("Wrapped object was not an instance of " + iface);
+    }
+
+    /*******************************************************************************************
+     *                                                                                         *
+     *                        Below are self define methods                                    *
+     *                                                                                         *
+     ********************************************************************************************/
+
+    /**
+     * set read-only hint of current thread,connections borrowed by current thread are from replicas when true
+     *
+     * @param readOnly read-only hint
+     */
+    public void setReadOnlyHint(boolean readOnly) {
+        if (readOnly)
+            readOnlyHint.set(Boolean.TRUE);
+        else
+            readOnlyHint.remove();
+    }
+
+    public void clearReadOnlyHint() {
+        readOnlyHint.remove();
+    }
+
+    /**
+     * borrow a connection from the replica with least using connections,if all replicas
+     * are ejected or failed in creation,then borrow from primary
+     *
+     * @return borrowed connection
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public Connection getReadOnlyConnection() throws SQLException {
+        final int size = replicas.length;
+        boolean[] tried = null;
+        for (int n = 0; n < size; n++) {
+            ReplicaNode node = selectReplica(tried);
+            if (node == null) break;
+            try {
+                Connection con = node.dataSource.getConnection();
+                node.failCount.set(0);
+                return con;
+            } catch (ConnectionCreateFailedException e) {
+                node.onCreateFailed(e);
+                if (tried == null) tried = new boolean[size];
+                tried[node.index] = true;
+            }
+        }
+        return primary.getConnection();
+    }
+
+    //select the replica with least using connections from available replicas
+    private ReplicaNode selectReplica(boolean[] tried) {
+        ReplicaNode selected = null;
+        int minUsing = Integer.MAX_VALUE;
+        final long time = System.currentTimeMillis();
+        for (ReplicaNode node : replicas) {
+            if ((tried != null && tried[node.index]) || node.ejectedUntil > time || node.dataSource.isClosed())
+                continue;
+            int using = node.dataSource.getConnUsingSize();
+            if (using < minUsing) {
+                minUsing = using;
+                selected = node;
+            }
+        }
+        return selected;
+    }
+
+    public BeeDataSource getPrimary() {
+        return primary;
+    }
+
+    public BeeDataSource[] getReplicas() {
+        BeeDataSource[] dataSources = new BeeDataSource[replicas.length];
+        for (int i = 0; i < replicas.length; i++)
+            dataSources[i] = replicas[i].dataSource;
+        return dataSources;
+    }
+
+    /**
+     * @param replica replica data source
+     * @return true,replica is ejected now
+     */
+    public boolean isReplicaEjected(BeeDataSource replica) {
+        for (ReplicaNode node : replicas)
+            if (node.dataSource == replica) return node.ejectedUntil > System.currentTimeMillis();
+        return false;
+    }
+
+    public int getReplicaMaxCreateFailures() {
+        return replicaMaxCreateFailures;
+    }
+
+    public void setReplicaMaxCreateFailures(int replicaMaxCreateFailures) {
+        if (replicaMaxCreateFailures > 0)
+            this.replicaMaxCreateFailures = replicaMaxCreateFailures;
+    }
+
+    public long getReplicaEjectTime() {
+        return replicaEjectTime;
+    }
+
+    public void setReplicaEjectTime(long replicaEjectTime) {
+        if (replicaEjectTime > 0)
+            this.replicaEjectTime = replicaEjectTime;
+    }
+
+    public boolean isLazyRouting() {
+        return lazyRouting;
+    }
+
+    public void setLazyRouting(boolean lazyRouting) {
+        this.lazyRouting = lazyRouting;
+    }
+
+    public boolean isClosed() {
+        return primary.isClosed();
+    }
+
+    public void close() {
+        primary.close();
+        for (ReplicaNode node : replicas)
+            node.dataSource.close();
+    }
+
+    private final class ReplicaNode {
+        private final BeeDataSource dataSource;
+        private final int index;
+        private final AtomicInteger failCount = new AtomicInteger(0);
+        private volatile long ejectedUntil;
+
+        ReplicaNode(BeeDataSource dataSource, int index) {
+            this.dataSource = dataSource;
+            this.index = index;
+        }
+
+        void onCreateFailed(SQLException e) {
+            if (failCount.incrementAndGet() >= replicaMaxCreateFailures) {
+                failCount.set(0);
+                ejectedUntil = System.currentTimeMillis() + replicaEjectTime;
+                commonLog.warn("BeeCP({})replica was ejected for {}ms,cause:{}", dataSource.getPoolName(), replicaEjectTime, String.valueOf(e.getCause()));
+            }
+        }
+    }
+
+    //connection handler,borrow target connection at first use
+    private final class LazyConnectionHandler implements InvocationHandler {
+        private Connection target;
+        private boolean readOnly;
+        private boolean closed;
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("toString".equals(name)) {
+                return "LazyConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+
+            if (target == null) {
+                if ("close".equals(name)) {
+                    closed = true;
+                    return null;
+                } else if ("isClosed".equals(name)) {
+                    return closed;
+                }
+                if (closed) throw ConnectionClosedException;
+                if ("setReadOnly".equals(name)) {
+                    readOnly = (Boolean) args[0];
+                    return null;
+                } else if ("isReadOnly".equals(name)) {
+                    return readOnly;
+                }
+
+                if (readOnly) {
+                    Connection con = getReadOnlyConnection();
+                    try {
+                        con.setReadOnly(true);
+                    } catch (SQLException e) {
+                        con.close();
+                        throw e;
+                    }
+                    target = con;
+                } else {
+                    target = primary.getConnection();
+                }
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+/**
+ * Priority of borrower,when pool is saturated,a returned connection is transferred
+ * to waiters of higher priority first.Some connections can be reserved for high
+ * priority borrowers(set by 'BeeDataSourceConfig.setHighPriorityReservedSize').
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public enum BorrowPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
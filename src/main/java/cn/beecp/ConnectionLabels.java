@@ -0,0 +1,51 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+/**
+ * Session state labels of borrowed connection,pool prefers an idle connection whose
+ * state matches them,otherwise applies differing ones on borrow.Properties set by labels are
+ * not reset to default when connection returned,so next labeled borrow may reuse them,other
+ * properties changed in borrowing are reset as usual.
+ * <p>
+ * Null catalog(schema) or {@link #ISOLATION_NOT_SET} means any value is accepted.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class ConnectionLabels {
+    public static final int ISOLATION_NOT_SET = -999;
+    private final String catalog;
+    private final String schema;
+    private final int transactionIsolation;
+
+    public ConnectionLabels(String catalog, String schema) {
+        this(catalog, schema, ISOLATION_NOT_SET);
+    }
+
+    public ConnectionLabels(String catalog, String schema, int transactionIsolation) {
+        this.catalog = catalog;
+        this.schema = schema;
+        this.transactionIsolation = transactionIsolation;
+    }
+
+    public String getCatalog() {
+        return catalog;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public int getTransactionIsolation() {
+        return transactionIsolation;
+    }
+
+    public String toString() {
+        return "ConnectionLabels{catalog=" + catalog + ",schema=" + schema + ",transactionIsolation=" + transactionIsolation + "}";
+    }
+}
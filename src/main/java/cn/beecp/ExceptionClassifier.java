@@ -0,0 +1,29 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+import java.sql.SQLException;
+
+/**
+ * Classifier of exceptions thrown by raw connections and statements,connection proxies
+ * and statement proxies call it on failure when it is configured in pool,a fatal error
+ * marks pooled connection broken,then it is removed from pool on close.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface ExceptionClassifier {
+
+    /**
+     * check exception whether raw connection is unusable after it
+     *
+     * @param e exception thrown from raw connection or statement
+     * @return true,raw connection is broken
+     */
+    boolean isFatal(SQLException e);
+
+}
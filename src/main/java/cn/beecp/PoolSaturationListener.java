@@ -0,0 +1,27 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+/**
+ * Saturation listener of pool,which is called by borrower threads when saturation state
+ * changed,so it should return quickly.Pool is saturated when waiters reach 'maxWaiters'
+ * or a standing wait queue is detected(set by 'BeeDataSourceConfig.setCodelTargetWait').
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface PoolSaturationListener {
+
+    /**
+     * called when saturation state of pool changed
+     *
+     * @param poolName  name of pool
+     * @param saturated true,pool become saturated;false,pool recovered from saturation
+     */
+    void onSaturationChanged(String poolName, boolean saturated);
+
+}
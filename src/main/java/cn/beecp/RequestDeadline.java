@@ -0,0 +1,68 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of current request in thread,which is set by request handler with its remaining
+ * time budget,then pool limits borrow waiting in the deadline and statements of connections
+ * borrowed in the deadline get a query timeout from remaining time(if not set explicitly).
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class RequestDeadline {
+    private static final ThreadLocal<long[]> deadlineLocal = new ThreadLocal<long[]>();
+    //nanoseconds:max timeout,deadline over it never expires in practice and keeps 'nanoTime' difference from overflow
+    private static final long MaxTimeoutNanos = Long.MAX_VALUE >>> 1;
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * set deadline of current thread
+     *
+     * @param timeout remaining time of request
+     * @param unit    time unit of timeout
+     */
+    public static void set(long timeout, TimeUnit unit) {
+        if (unit == null) throw new IllegalArgumentException("Time unit can't be null");
+        long[] holder = deadlineLocal.get();
+        if (holder == null) {
+            holder = new long[1];
+            deadlineLocal.set(holder);
+        }
+        holder[0] = System.nanoTime() + Math.min(unit.toNanos(timeout), MaxTimeoutNanos);
+    }
+
+    //remove deadline of current thread
+    public static void clear() {
+        deadlineLocal.remove();
+    }
+
+    public static boolean isSet() {
+        return deadlineLocal.get() != null;
+    }
+
+    /**
+     * @return deadline of current thread in 'System.nanoTime()' scale,only valid when {@link #isSet()}
+     */
+    public static long getDeadlineNanos() {
+        long[] holder = deadlineLocal.get();
+        return holder != null ? holder[0] : 0L;
+    }
+
+    /**
+     * @return remaining nanoseconds of current thread deadline(maybe negative when expired),
+     * Long.MAX_VALUE when not set
+     */
+    public static long getRemainingNanos() {
+        long[] holder = deadlineLocal.get();
+        return holder != null ? holder[0] - System.nanoTime() : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp;
+
+/**
+ * Sql execution interceptor,statement proxies call it after each 'execute*' method
+ * when it is configured in pool,otherwise no call.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface SqlExecuteInterceptor {
+
+    /**
+     * called after one execution of statement
+     *
+     * @param poolName     name of pool which the statement belongs to
+     * @param sql          executed sql,maybe null on batch execution of a plain statement
+     * @param elapsedNanos execution elapsed time(nanoseconds)
+     * @param result       execution result,null when void method or failed
+     * @param cause        failure cause,null when success
+     */
+    void afterExecute(String poolName, String sql, long elapsedNanos, Object result, Throwable cause);
+
+}
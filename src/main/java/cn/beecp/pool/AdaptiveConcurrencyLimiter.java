@@ -0,0 +1,141 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limiter with AIMD control on connect latency,limit grows by one
+ * per limit's worth of healthy samples and is cut multiplicatively when a sample
+ * exceeds the smoothed latency by tolerance or connect fails.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class AdaptiveConcurrencyLimiter {
+    //multiplier of limit on a slow or failed sample
+    private static final double BackoffRatio = 0.7D;
+    //sample is slow when it is greater than smoothed latency multiplied by this value
+    private static final double LatencyTolerance = 2.0D;
+    //weight of new sample in smoothed latency
+    private static final double SmoothFactor = 0.05D;
+    //nanoseconds:sample within this slack over smoothed latency is never slow(ignore jitter of fast connect)
+    private static final long LatencySlackNanos = 1000000L;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock;
+    private final Condition permitCondition;
+    private double limit;
+    private double smoothedLatencyNanos;
+    private int inFlight;
+    private int waiting;
+
+    AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, boolean fair) {
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = this.maxLimit;
+        this.lock = new ReentrantLock(fair);
+        this.permitCondition = lock.newCondition();
+    }
+
+    /**
+     * acquire a permit in timeout
+     *
+     * @param timeoutNs timeout(nanoseconds)
+     * @return true,a permit acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    final boolean tryAcquire(long timeoutNs) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return true;
+            }
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (timeoutNs <= 0L) return false;
+                    timeoutNs = permitCondition.awaitNanos(timeoutNs);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //called when a permit holder closed its connection
+    final void release() {
+        lock.lock();
+        try {
+            if (inFlight > 0) inFlight--;
+            if (waiting > 0 && inFlight < (int) limit) permitCondition.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * adjust limit with a connect sample
+     *
+     * @param latencyNanos connect time(nanoseconds)
+     * @param success      true,connect succeeded
+     */
+    final void onSample(long latencyNanos, boolean success) {
+        lock.lock();
+        try {
+            int oldLimit = (int) limit;
+            boolean slow = smoothedLatencyNanos > 0D && latencyNanos > smoothedLatencyNanos * LatencyTolerance
+                    && latencyNanos - smoothedLatencyNanos > LatencySlackNanos;
+            if (!success || slow) {
+                limit = Math.max(minLimit, limit * BackoffRatio);
+            } else if (inFlight * 2 >= oldLimit) {//grow only when limit is really used
+                limit = Math.min(maxLimit, limit + 1D / limit);
+            }
+            if (success) {
+                smoothedLatencyNanos = smoothedLatencyNanos > 0D ?
+                        smoothedLatencyNanos + (latencyNanos - smoothedLatencyNanos) * SmoothFactor : latencyNanos;
+            }
+            if (waiting > 0 && (int) limit > oldLimit) permitCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    final int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    final int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    final int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
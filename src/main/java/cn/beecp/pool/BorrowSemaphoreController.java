@@ -0,0 +1,116 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Controller of adaptive borrow semaphore size,which collects borrow wait time and
+ * hold time in a window,then computes a new size at end of window.
+ * <p>
+ * 1) base size by Little's law: borrow rate * (mean wait + mean hold),that is mean
+ * count of threads which are borrowing or using connections,plus some headroom
+ * 2) gradient on p99 wait: when p99 wait climbs over its smoothed value,size is raised
+ * if borrowers queue on semaphore,or cut if admitted borrowers queue for transfer
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class BorrowSemaphoreController {
+    //extra permits ratio over base size
+    private static final double Headroom = 1.2D;
+    //p99 wait climbs when it is greater than smoothed value multiplied by this value
+    private static final double WaitTolerance = 2.0D;
+    //weight of new p99 wait in smoothed value
+    private static final double SmoothFactor = 0.2D;
+    //nanoseconds:p99 wait under it is never treated as climbing
+    private static final long MinClimbWaitNanos = 1000000L;
+    //bucket i holds wait times in [2^(i-1),2^i) microseconds,bucket 0 for less than one microsecond
+    private static final int BucketSize = 32;
+
+    private final int minSize;
+    private final int maxSize;
+    private final AtomicLongArray waitBuckets = new AtomicLongArray(BucketSize);
+    private final AtomicLong waitCount = new AtomicLong(0);
+    private final AtomicLong waitNanos = new AtomicLong(0);
+    private final AtomicLong holdNanos = new AtomicLong(0);
+    private double smoothedP99WaitNanos;
+
+    BorrowSemaphoreController(int minSize, int maxSize) {
+        this.minSize = minSize;
+        this.maxSize = Math.max(minSize, maxSize);
+    }
+
+    final int getMinSize() {
+        return minSize;
+    }
+
+    final int getMaxSize() {
+        return maxSize;
+    }
+
+    //called after a successful borrow
+    final void recordWait(final long nanos) {
+        final long micros = nanos / 1000L;
+        final int index = micros <= 0L ? 0 : Math.min(BucketSize - 1, 64 - Long.numberOfLeadingZeros(micros));
+        waitBuckets.incrementAndGet(index);
+        waitNanos.addAndGet(nanos);
+        waitCount.incrementAndGet();
+    }
+
+    //called when a borrowed connection returned
+    final void recordHold(final long nanos) {
+        holdNanos.addAndGet(nanos);
+    }
+
+    /**
+     * compute semaphore size with samples of last window,then samples are cleared
+     *
+     * @param curSize         current semaphore size
+     * @param semaphoreWaiter count of borrowers waiting for semaphore permit
+     * @param transferWaiter  count of borrowers waiting for transferred connection
+     * @param windowNanos     time of last window
+     * @return new semaphore size
+     */
+    final int computeSize(final int curSize, final int semaphoreWaiter, final int transferWaiter, final long windowNanos) {
+        final long count = waitCount.getAndSet(0L);
+        final long sumWait = waitNanos.getAndSet(0L);
+        final long sumHold = holdNanos.getAndSet(0L);
+        final long[] buckets = new long[BucketSize];
+        for (int i = 0; i < BucketSize; i++)
+            buckets[i] = waitBuckets.getAndSet(i, 0L);
+        if (count == 0L || windowNanos <= 0L) return curSize;//no samples,keep current
+
+        //1:Little's law,L = λW = count/window * (sumWait + sumHold)/count
+        int size = (int) Math.ceil((double) (sumWait + sumHold) / windowNanos * Headroom);
+
+        //2:gradient on p99 wait
+        final long p99 = percentile(buckets, count, 0.99D);
+        if (smoothedP99WaitNanos > 0D && p99 > MinClimbWaitNanos && p99 > smoothedP99WaitNanos * WaitTolerance) {
+            if (semaphoreWaiter > transferWaiter)//starved on semaphore
+                size = Math.max(size, curSize + 1);
+            else if (transferWaiter > 0)//too many admitted borrowers wait for transfer
+                size = Math.min(size, curSize - Math.max(1, curSize >>> 2));
+        }
+        smoothedP99WaitNanos = smoothedP99WaitNanos > 0D ?
+                smoothedP99WaitNanos + (p99 - smoothedP99WaitNanos) * SmoothFactor : p99;
+
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    //upper bound of the bucket which contains the percentile
+    private static long percentile(final long[] buckets, final long count, final double ratio) {
+        final long rank = (long) Math.ceil(count * ratio);
+        long sum = 0L;
+        for (int i = 0; i < BucketSize; i++) {
+            sum += buckets[i];
+            if (sum >= rank) return (1L << i) * 1000L;
+        }
+        return (1L << (BucketSize - 1)) * 1000L;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * CoDel(controlled delay) of borrow waiting,a standing queue is detected when min wait time
+ * of borrowers in an interval is over target,then pool is overloaded until an interval with
+ * min wait time under target,borrowers wait at most target time in overload.
+ * <p>
+ * Overload state expires when no wait recorded in one more interval,so pool is not kept
+ * overloaded after borrowers are shed by upstream.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class BorrowWaitCoDel {
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final AtomicLong minWaitNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong intervalEnd;
+    private volatile boolean overloaded;
+
+    BorrowWaitCoDel(long targetNanos, long intervalNanos) {
+        this.targetNanos = targetNanos;
+        this.intervalNanos = intervalNanos;
+        this.intervalEnd = new AtomicLong(nanoTime() + intervalNanos);
+    }
+
+    //called after borrowing with wait time,which maybe failed in timeout
+    final void record(final long waitNanos) {
+        long min;
+        while (waitNanos < (min = minWaitNanos.get()) && !minWaitNanos.compareAndSet(min, waitNanos)) ;
+
+        final long now = nanoTime();
+        final long end = intervalEnd.get();
+        if (now - end >= 0L && intervalEnd.compareAndSet(end, now + intervalNanos)) {//end of interval
+            min = minWaitNanos.getAndSet(Long.MAX_VALUE);
+            overloaded = min != Long.MAX_VALUE && min > targetNanos;
+        }
+    }
+
+    //limit wait time in target when overloaded
+    final long limitWait(final long waitNanos) {
+        return isOverloaded() && targetNanos < waitNanos ? targetNanos : waitNanos;
+    }
+
+    final boolean isOverloaded() {
+        return overloaded && nanoTime() - intervalEnd.get() < intervalNanos;
+    }
+}
@@ -16,4 +16,5 @@ final class Borrower {
     public volatile Object state;
     public PooledConnection lastUsed;
     public Thread thread = Thread.currentThread();
+    public int priority = PoolStaticCenter.PRIORITY_NORMAL;
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+
+/**
+ * Token bucket of connection creation,tokens are refilled at a fixed rate and
+ * at most 'burst' tokens are stored,callers wait for token within their timeout.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ConnectionCreateRateLimiter {
+    private final long intervalNanos;//nanoseconds to refill one token
+    private final long burstNanos;//time to refill full bucket
+    private long theoreticalNanos;//time when bucket would be full
+
+    ConnectionCreateRateLimiter(double rate, int burst) {
+        this.intervalNanos = Math.max(1L, (long) (1000000000D / rate));
+        this.burstNanos = intervalNanos * burst;
+        this.theoreticalNanos = nanoTime();
+    }
+
+    /**
+     * reserve a token,which is available after returned nanoseconds
+     *
+     * @param now       current nano time
+     * @param maxWaitNs max wait time(nanoseconds)
+     * @return wait time for reserved token,-1 when it can't be available in max wait time
+     */
+    private synchronized long reserve(final long now, final long maxWaitNs) {
+        final long base = theoreticalNanos - now > 0L ? theoreticalNanos : now;
+        final long nextTheoreticalNanos = base + intervalNanos;
+        final long waitNs = nextTheoreticalNanos - burstNanos - now;
+        if (waitNs > maxWaitNs) return -1L;
+        theoreticalNanos = nextTheoreticalNanos;
+        return waitNs > 0L ? waitNs : 0L;
+    }
+
+    /**
+     * acquire a token in timeout
+     *
+     * @param timeoutNs timeout(nanoseconds)
+     * @return true,a token acquired
+     */
+    final boolean tryAcquire(final long timeoutNs) {
+        final long now = nanoTime();
+        final long waitNs = reserve(now, timeoutNs > 0L ? timeoutNs : 0L);
+        if (waitNs < 0L) return false;
+        if (waitNs > 0L) {
+            final long deadline = now + waitNs;
+            long t = waitNs;
+            do {
+                parkNanos(t);
+                if (Thread.currentThread().isInterrupted()) {
+                    release();//reserved token not used
+                    return false;
+                }
+                t = deadline - nanoTime();
+            } while (t > 0L);
+        }
+        return true;
+    }
+
+    /**
+     * return an acquired token,which is not used to create connection
+     */
+    final synchronized void release() {
+        theoreticalNanos -= intervalNanos;
+    }
+}
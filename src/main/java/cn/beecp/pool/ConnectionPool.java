@@ -7,9 +7,13 @@
 package cn.beecp.pool;
 
 import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BorrowPriority;
+import cn.beecp.ConnectionLabels;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Connection pool interface
@@ -35,6 +39,41 @@ public interface ConnectionPool {
      */
     Connection getConnection() throws SQLException;
 
+    /**
+     * borrow a connection from pool in timeout,which is used instead of 'maxWait'
+     *
+     * @param timeout max wait time,which is limited by request deadline of current thread
+     * @param unit    time unit of timeout
+     * @return If exists idle connection in pool,then return one;if not, waiting until other borrower release
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    Connection getConnection(long timeout, TimeUnit unit) throws SQLException;
+
+    /**
+     * borrow a connection whose session state matches labels
+     *
+     * @param labels session state labels
+     * @return If exists idle matched connection in pool,then return it;otherwise return one after applying labels
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    Connection getConnection(ConnectionLabels labels) throws SQLException;
+
+    /**
+     * borrow a connection with priority,returned connections are transferred to waiters of higher priority first
+     *
+     * @param priority borrower priority
+     * @return If exists idle connection in pool,then return one;if not, waiting until other borrower release
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    Connection getConnection(BorrowPriority priority) throws SQLException;
+
+    /**
+     * set default borrow priority of current thread
+     *
+     * @param priority borrower priority,null means normal
+     */
+    void setThreadBorrowPriority(BorrowPriority priority);
+
     /**
      * Connection return to pool after it end use,if exist waiter in pool,
      * then try to transfer the connection to one waiting borrower
@@ -62,6 +101,14 @@ public interface ConnectionPool {
      */
     void clearAllConnections(boolean forceCloseUsingOnClear);
 
+    /**
+     * Replace all connections gradually,a new connection is created before an old idle one
+     * is closed,borrowers are not failed during refreshing
+     *
+     * @return future of refreshing,its result is the count of replaced connections
+     */
+    Future<Integer> refreshAllConnections();
+
     /**
      * check pool is closed
      *
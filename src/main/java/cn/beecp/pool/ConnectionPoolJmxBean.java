@@ -23,6 +23,9 @@ public interface ConnectionPoolJmxBean {
     //return using connection size
     int getConnUsingSize();
 
+    //return current permit size of semaphore(adjusted in runtime when adaptive)
+    int getBorrowSemaphoreSize();
+
     //return permit size taken from semaphore
     int getSemaphoreAcquiredSize();
 
@@ -35,5 +38,38 @@ public interface ConnectionPoolJmxBean {
     //set pool info debug switch
     void setEnableRuntimeLog(boolean indicator);
 
+    //return top sql statistics order by total execution time
+    String[] getSqlStatisticTopByTotalTime();
+
+    //return top sql statistics order by execution count
+    String[] getSqlStatisticTopByCount();
+
+    //return top sql statistics order by max execution time
+    String[] getSqlStatisticTopByMaxTime();
+
+    //clear all sql statistics
+    void clearSqlStatistic();
+
+    //return count of borrowing with connection labels
+    long getLabelBorrowCount();
+
+    //return count of labeled borrowing which got a matched connection
+    long getLabelHitCount();
+
+    //return hit rate of labeled borrowing
+    double getLabelHitRate();
+
+    //return true when waiters reach max size or a standing wait queue is detected
+    boolean isSaturated();
+
+    //return true when circuit breaker of connection creation is open
+    boolean isCircuitBreakerOpen();
+
+    //change max size of pool,surplus connections are closed when idle or returned
+    void setMaxActive(int maxActive);
+
+    //change permit size of borrow semaphore,current permit holders are not affected,not supported by adaptive semaphore
+    void setBorrowSemaphoreSize(int borrowSemaphoreSize);
+
 }
 
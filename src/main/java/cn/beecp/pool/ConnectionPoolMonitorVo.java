@@ -22,6 +22,10 @@ public class ConnectionPoolMonitorVo {
     private int usingSize;
     private int semaphoreWaiterSize;
     private int transferWaiterSize;
+    private int inFlightSize;
+    private int concurrencyLimit;
+    private long createdCount;
+    private long closedCount;
 
     public String getPoolName() {
         return poolName;
@@ -86,4 +90,36 @@ public class ConnectionPoolMonitorVo {
     void setTransferWaiterSize(int transferWaiterSize) {
         this.transferWaiterSize = transferWaiterSize;
     }
+
+    public int getInFlightSize() {
+        return inFlightSize;
+    }
+
+    void setInFlightSize(int inFlightSize) {
+        this.inFlightSize = inFlightSize;
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    void setCreatedCount(long createdCount) {
+        this.createdCount = createdCount;
+    }
+
+    public long getClosedCount() {
+        return closedCount;
+    }
+
+    void setClosedCount(long closedCount) {
+        this.closedCount = closedCount;
+    }
 }
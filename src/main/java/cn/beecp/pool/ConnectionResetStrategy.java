@@ -0,0 +1,29 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.sql.SQLException;
+
+/**
+ * Strategy to reset dirty properties of raw connection to default on return,
+ * the strategy is selected by driver of the first connection.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+interface ConnectionResetStrategy {
+
+    /**
+     * reset dirty properties to default values of pooled connection
+     *
+     * @param p        pooled connection
+     * @param resetInd dirty indicators(autoCommit,isolation,readOnly,catalog,schema,networkTimeout)
+     * @throws SQLException if reset failed
+     */
+    void reset(PooledConnection p, boolean[] resetInd) throws SQLException;
+
+}
@@ -7,19 +7,27 @@
 package cn.beecp.pool;
 
 import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BorrowPriority;
+import cn.beecp.ConnectionLabels;
+import cn.beecp.ExceptionClassifier;
+import cn.beecp.PoolSaturationListener;
 import cn.beecp.RawConnectionFactory;
+import cn.beecp.RequestDeadline;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Iterator;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static cn.beecp.pool.PoolStaticCenter.*;
@@ -43,17 +51,27 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
     private static final String DESC_RM_CLOSED = "closed";
     private static final String DESC_RM_CLEAR = "clear";
     private static final String DESC_RM_DESTROY = "destroy";
-    private final ConcurrentLinkedQueue<Borrower> waitQueue = new ConcurrentLinkedQueue<Borrower>();
+    private static final String DESC_RM_GROUP = "group";
+    private static final String DESC_RM_SHRINK = "shrink";
+    private static final String DESC_RM_REFRESH = "refresh";
+    //waiter queues of priorities,index is ordinal of priority
+    private final ConcurrentLinkedQueue<Borrower>[] waitQueues = createWaitQueues();
     private final ThreadLocal<WeakReference<Borrower>> threadLocal = new ThreadLocal<WeakReference<Borrower>>();
     private final ConnectionPoolMonitorVo monitorVo = new ConnectionPoolMonitorVo();
     private final AtomicInteger poolState = new AtomicInteger(POOL_UNINIT);
     private final AtomicInteger servantState = new AtomicInteger(THREAD_WORKING);
     private final AtomicInteger servantTryCount = new AtomicInteger(0);
     private final AtomicInteger idleScanState = new AtomicInteger(THREAD_WORKING);
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile PooledConnection refreshingConn;
+    private final AtomicInteger createFailCount = new AtomicInteger(0);
+    private final AtomicLong labelBorrowCount = new AtomicLong(0);
+    private final AtomicLong labelHitCount = new AtomicLong(0);
+    private volatile SQLException circuitBreakerCause;//not null when circuit breaker is open
     private final IdleTimeoutScanThread idleScanThread = new IdleTimeoutScanThread(this);
     private boolean printRuntimeLog;
 
-    private int poolMaxSize;
+    private volatile int poolMaxSize;
     private long maxWaitNs;//nanoseconds
     private long idleTimeoutMs;//milliseconds
     private long holdTimeoutMs;//milliseconds
@@ -61,13 +79,16 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
     private long conTestInterval;//milliseconds
     private int connectionTestTimeout;//seconds
     private long delayTimeForNextClearNs;//nanoseconds
+    private long delayTimeForNextRefreshNs;//nanoseconds
+    private int circuitBreakerFailureThreshold;
     private PooledConnectionTester conTester;
     private PooledConnectionTransferPolicy transferPolicy;
     private ConnectionPoolHook exitHook;
     private BeeDataSourceConfig poolConfig;
-    private int semaphoreSize;
+    private volatile int semaphoreSize;
     private PoolSemaphore semaphore;
     private RawConnectionFactory conFactory;
+    private RawConnectionCloseListener conCloseListener;//null when connection factory not listen closing
     private volatile PooledConnection[] conArray = new PooledConnection[0];
 
     private String poolName;
@@ -76,6 +97,25 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
     private ThreadPoolExecutor networkTimeoutExecutor;
     private boolean isFirstValidConnection = true;
     private PooledConnection clonePooledConn;
+    private SqlExecuteTracer sqlExecuteTracer;
+    private SqlStatisticCollector sqlStatisticCollector;
+    private SlowSqlLogAppender slowSqlLogAppender;
+    private PoolGroup poolGroup;
+    private ConnectionCreateRateLimiter createRateLimiter;
+    private ThreadPoolExecutor resetExecutor;//null when not async reset on return
+    private BorrowSemaphoreController semaphoreController;//null when not adaptive semaphore
+    private PoolSemaphore sharedSemaphore;//null when no connections reserved for high priority,resized with max size
+    private int maxWaiters;//zero means unlimited
+    private final AtomicInteger waitingCount = new AtomicInteger(0);//only counted when 'maxWaiters' set
+    private BorrowWaitCoDel codel;//null when disabled
+    private PoolSaturationListener saturationListener;
+    private final AtomicBoolean saturatedState = new AtomicBoolean(false);
+    private ExceptionClassifier exceptionClassifier;//null when fatal error eviction disabled
+    private ThreadPoolExecutor sweepExecutor;//null when no validation sweep on fatal error burst
+    private int fatalErrorBurstSize;
+    private long fatalErrorBurstWindowNs;
+    private final AtomicInteger fatalErrorCount = new AtomicInteger(0);
+    private final AtomicLong fatalErrorWindowEnd = new AtomicLong(0L);
     /******************************************************************************************
      *                                                                                        *
      *                 1: Pool initialize and Pooled connection create/remove methods         *
@@ -97,11 +137,17 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
             commonLog.info("BeeCP({})starting....", poolName);
             poolMaxSize = poolConfig.getMaxActive();
             conFactory = poolConfig.getConnectionFactory();
+            if (conFactory instanceof RawConnectionCloseListener)
+                conCloseListener = (RawConnectionCloseListener) conFactory;
 
             idleTimeoutMs = poolConfig.getIdleTimeout();
             holdTimeoutMs = poolConfig.getHoldTimeout();
             maxWaitNs = MILLISECONDS.toNanos(poolConfig.getMaxWait());
             delayTimeForNextClearNs = MILLISECONDS.toNanos(poolConfig.getDelayTimeForNextClear());
+            delayTimeForNextRefreshNs = MILLISECONDS.toNanos(poolConfig.getDelayTimeForNextRefresh());
+            circuitBreakerFailureThreshold = poolConfig.getCircuitBreakerFailureThreshold();
+            if (poolConfig.getConnectionCreateRate() > 0)
+                createRateLimiter = new ConnectionCreateRateLimiter(poolConfig.getConnectionCreateRate(), poolConfig.getConnectionCreateBurst());
             conTestInterval = poolConfig.getConnectionTestInterval();
             connectionTestTimeout = poolConfig.getConnectionTestTimeout();
             if (poolConfig.isFairMode()) {
@@ -115,11 +161,57 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
             printRuntimeLog = poolConfig.isEnableRuntimeLog();
             unCatchStateCode = transferPolicy.getCheckStateCode();
             semaphoreSize = poolConfig.getBorrowSemaphoreSize();
+            if (poolConfig.isAdaptiveBorrowSemaphore()) {
+                int maxSize = poolConfig.getBorrowSemaphoreMaxSize() > 0 ? poolConfig.getBorrowSemaphoreMaxSize() : poolMaxSize;
+                semaphoreController = new BorrowSemaphoreController(Math.min(poolConfig.getBorrowSemaphoreMinSize(), maxSize), maxSize);
+                semaphoreSize = Math.max(semaphoreController.getMinSize(), Math.min(semaphoreController.getMaxSize(), semaphoreSize));
+            }
             semaphore = new PoolSemaphore(semaphoreSize, poolConfig.isFairMode());
+            maxWaiters = poolConfig.getMaxWaiters();
+            if (poolConfig.getCodelTargetWait() > 0)
+                codel = new BorrowWaitCoDel(MILLISECONDS.toNanos(poolConfig.getCodelTargetWait()), MILLISECONDS.toNanos(poolConfig.getCodelInterval()));
+            saturationListener = poolConfig.getSaturationListener();
+            if (poolConfig.getHighPriorityReservedSize() > 0)
+                sharedSemaphore = new PoolSemaphore(poolMaxSize - poolConfig.getHighPriorityReservedSize(), poolConfig.isFairMode());
             networkTimeoutExecutor = new ThreadPoolExecutor(1, 1, 10, SECONDS,
                     new LinkedBlockingQueue<Runnable>(), new PoolThreadThreadFactory("networkTimeoutRestThread"));
             networkTimeoutExecutor.allowCoreThreadTimeOut(true);
-            createInitConnections(poolConfig.getInitialSize());
+            if (poolConfig.isAsyncResetOnReturn()) {
+                int resetThreadSize = poolConfig.getAsyncResetThreadSize();
+                resetExecutor = new ThreadPoolExecutor(resetThreadSize, resetThreadSize, 15, SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new PoolThreadThreadFactory(poolName + "-reset"));
+                resetExecutor.allowCoreThreadTimeOut(true);
+            }
+            exceptionClassifier = poolConfig.getExceptionClassifier();//default one created on first connection
+            if ((exceptionClassifier != null || poolConfig.isEnableFatalErrorEviction()) && poolConfig.getFatalErrorBurstSize() > 0) {
+                fatalErrorBurstSize = poolConfig.getFatalErrorBurstSize();
+                fatalErrorBurstWindowNs = MILLISECONDS.toNanos(poolConfig.getFatalErrorBurstWindow());
+                int sweepThreadSize = Math.min(4, poolMaxSize);
+                sweepExecutor = new ThreadPoolExecutor(sweepThreadSize, sweepThreadSize, 15, SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new PoolThreadThreadFactory(poolName + "-sweep"));
+                sweepExecutor.allowCoreThreadTimeOut(true);
+            }
+            if (poolConfig.isEnableSqlStatistic())
+                sqlStatisticCollector = new SqlStatisticCollector(poolConfig.getSqlStatisticMaxSize());
+            if (poolConfig.getSlowSqlThreshold() > 0) {
+                slowSqlLogAppender = new SlowSqlLogAppender(poolName, poolConfig.getSlowSqlLogQueueSize());
+                slowSqlLogAppender.start();
+            }
+            if (poolConfig.getSqlExecuteInterceptor() != null || sqlStatisticCollector != null || slowSqlLogAppender != null)
+                sqlExecuteTracer = new SqlExecuteTracer(poolName, poolConfig.getSqlExecuteInterceptor(), sqlStatisticCollector,
+                        slowSqlLogAppender, MILLISECONDS.toNanos(poolConfig.getSlowSqlThreshold()),
+                        poolConfig.getSlowSqlLogSampleRate(), poolConfig.isSlowSqlLogParameters());
+            poolGroup = poolConfig.getPoolGroup();
+            if (poolGroup != null) poolGroup.register(this, poolConfig.getPoolGroupMinSize());
+            try {
+                createInitConnections(poolConfig.getInitialSize());
+            } catch (SQLException e) {
+                if (poolGroup != null) poolGroup.unregister(this);
+                if (slowSqlLogAppender != null) slowSqlLogAppender.close();
+                if (resetExecutor != null) resetExecutor.shutdownNow();
+                if (sweepExecutor != null) sweepExecutor.shutdownNow();
+                throw e;
+            }
 
             exitHook = new ConnectionPoolHook(this);
             Runtime.getRuntime().addShutdownHook(exitHook);
@@ -140,6 +232,12 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
             this.setName(poolName + "-workServant");
             this.start();
             poolState.set(POOL_NORMAL);
+            if (semaphoreController != null) {
+                SemaphoreAdjustThread adjustThread = new SemaphoreAdjustThread(this);
+                adjustThread.setDaemon(true);
+                adjustThread.setName(poolName + "-semaphoreAdjust");
+                adjustThread.start();
+            }
         } else {
             throw new SQLException("Pool has initialized");
         }
@@ -193,13 +291,19 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
     private synchronized final PooledConnection createPooledConn(final int state) throws SQLException {
         int l = conArray.length;
         if (l < poolMaxSize) {
+            if (poolGroup != null && !poolGroup.tryAcquire(this)) return null;//group is full
             if (printRuntimeLog)
                 commonLog.info("BeeCP({}))begin to create a new pooled connection,state:{}", poolName, state);
             Connection con;
             try {
                 con = conFactory.create();
+                if (circuitBreakerFailureThreshold > 0) createFailCount.set(0);
             } catch (Throwable e) {
-                throw new ConnectionCreateFailedException(e);
+                if (poolGroup != null) poolGroup.release(this);
+                ConnectionCreateFailedException failedException = new ConnectionCreateFailedException(e);
+                if (circuitBreakerFailureThreshold > 0 && poolState.get() == POOL_NORMAL)
+                    onCreateFailed(failedException);//failures in pool initialization not counted
+                throw failedException;
             }
             try {
                 if (isFirstValidConnection) testFirstConnection(con);
@@ -212,7 +316,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                 conArray = arrayNew;
                 return p;
             } catch (Throwable e) {
-                oclose(con);
+                closeRawConn(con);
+                if (poolGroup != null) poolGroup.release(this);
                 throw e instanceof SQLException ? (SQLException) e : new SQLException(e);
             }
         } else {
@@ -220,6 +325,45 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         }
     }
 
+    //called in creation lock,open circuit breaker after continuous failures,waiters are woken up in probe thread
+    private void onCreateFailed(final ConnectionCreateFailedException e) {
+        if (circuitBreakerCause != null) {//keep last cause
+            circuitBreakerCause = e;
+        } else if (createFailCount.incrementAndGet() >= circuitBreakerFailureThreshold) {
+            circuitBreakerCause = e;
+            commonLog.warn("BeeCP({})circuit breaker opened after {} continuous creation failures", poolName, createFailCount.get());
+            new PoolThreadThreadFactory(poolName + "-circuitBreakerProbe").newThread(new CircuitBreakerProbeTask(this)).start();
+        }
+    }
+
+    //called by probe thread,wake up all waiters with cause of opened circuit breaker
+    private void wakeupWaitersOnBreakerOpen() {
+        Throwable cause;
+        for (int i = getWaiterSize(); i > 0 && (cause = circuitBreakerCause) != null; i--)
+            transferException(cause);
+    }
+
+    //called by probe thread,return true when circuit breaker closed
+    private boolean probeCreate() {
+        try {
+            PooledConnection p = createPooledConn(CON_USING);
+            if (p == null) return false;//pool or group is full,keep probing
+            createFailCount.set(0);
+            circuitBreakerCause = null;
+            commonLog.info("BeeCP({})circuit breaker closed", poolName);
+            recycle(p);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    //close a raw connection created by factory,then notify factory
+    final void closeRawConn(final Connection con) {
+        oclose(con);
+        if (conCloseListener != null) conCloseListener.onClosed(con);
+    }
+
     //remove one pooled connection
     private synchronized void removePooledConn(final PooledConnection p, final String removeType) {
         if (printRuntimeLog)
@@ -232,12 +376,50 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                 arraycopy(conArray, 0, arrayNew, 0, i);
                 int m = l - i - 1;
                 if (m > 0) arraycopy(conArray, i + 1, arrayNew, i, m);
+                conArray = arrayNew;
+                if (poolGroup != null) poolGroup.release(this);
                 break;
             }
         }
         if (printRuntimeLog)
             commonLog.info("BeeCP({}))has removed pooled connection:{},reason:{}", poolName, p, removeType);
-        conArray = arrayNew;
+    }
+
+    //close one idle connection to release group size for other member pool,called by pool group
+    final boolean closeIdleForGroup() {
+        if (poolState.get() != POOL_NORMAL) return false;
+        final PooledConnection[] array = conArray;
+        for (int i = 0, l = array.length; i < l; i++) {
+            PooledConnection p = array[i];
+            if (p.state == CON_IDLE && ConStUpd.compareAndSet(p, CON_IDLE, CON_CLOSED)) {
+                removePooledConn(p, DESC_RM_GROUP);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //create reset strategy by driver of first connection
+    private ConnectionResetStrategy createResetStrategy(Connection rawCon) {
+        if (poolConfig.isEnableDriverAwareReset()) {
+            try {
+                DatabaseMetaData metaData = rawCon.getMetaData();
+                String driverName = metaData.getDriverName();
+                String url = metaData.getURL();
+                //driver caches session state locally when 'useLocalSessionState=true'(in url or connect properties),then can't be reset by sql
+                boolean localSessionState = (url != null && url.toLowerCase().contains("uselocalsessionstate=true"))
+                        || "true".equalsIgnoreCase(String.valueOf(poolConfig.getConnectProperty("useLocalSessionState")));
+                if (driverName != null && driverName.contains("MySQL Connector") && !localSessionState) {
+                    if (printRuntimeLog)
+                        commonLog.info("BeeCP({})use MySQL reset strategy", poolName);
+                    return new MysqlConnectionResetStrategy(metaData.getDatabaseMajorVersion());
+                }
+            } catch (Throwable e) {
+                if (printRuntimeLog)
+                    commonLog.warn("BeeCP({})failed to detect driver for reset strategy,cause:", poolName, e);
+            }
+        }
+        return new GenericConnectionResetStrategy();
     }
 
     private void testFirstConnection(Connection rawCon) throws SQLException {
@@ -258,6 +440,24 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                 commonLog.warn("BeeCP({})driver not support 'networkTimeout',cause:", poolName, e);
         }
 
+        boolean supportRequestBoundary = false;
+        if (poolConfig.isEnableRequestBoundary()) {//test 'beginRequest/endRequest'
+            supportRequestBoundary = PooledConnection.isRequestBoundaryImplemented(rawCon);
+            if (!supportRequestBoundary && printRuntimeLog)
+                commonLog.warn("BeeCP({})driver not support 'beginRequest/endRequest'", poolName);
+        }
+
+        if (exceptionClassifier == null && poolConfig.isEnableFatalErrorEviction()) {//vendor codes of detected database
+            String productName = null;
+            try {
+                productName = rawCon.getMetaData().getDatabaseProductName();
+            } catch (Throwable e) {
+                if (printRuntimeLog)
+                    commonLog.warn("BeeCP({})failed to detect database for exception classifier,cause:", poolName, e);
+            }
+            exceptionClassifier = new SqlStateExceptionClassifier(productName);
+        }
+
         int defaultTransactionIsolation = poolConfig.getDefaultTransactionIsolationCode();
         if (defaultTransactionIsolation == -999) defaultTransactionIsolation = rawCon.getTransactionIsolation();
         this.clonePooledConn = new PooledConnection(this,
@@ -268,7 +468,16 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                 defaultTransactionIsolation,
                 supportNetworkTimeout,
                 defaultNetworkTimeout,
-                networkTimeoutExecutor);
+                networkTimeoutExecutor,
+                sqlExecuteTracer,
+                createResetStrategy(rawCon),
+                poolConfig.isSkipReadOnlyRollback(),
+                poolConfig.isMirrorSessionState(),
+                poolConfig.isLazyTransactionBegin(),
+                resetExecutor != null,
+                supportRequestBoundary,
+                supportRequestBoundary && poolConfig.isSkipClearWarningsOnRequestEnd(),
+                exceptionClassifier);
 
         boolean validTestFailed;
         this.isFirstValidConnection = false;//remark as tested
@@ -347,39 +556,130 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
      * @throws SQLException if failed(create failed,interrupt,wait timeout),then throw failed cause exception
      */
     public final Connection getConnection() throws SQLException {
-        if (poolState.get() != POOL_NORMAL) throw PoolCloseException;
-        //0:try to get from threadLocal cache
+        return getConnection(null, null, maxWaitNs);
+    }
+
+    /**
+     * Get one connection in timeout,which is used instead of 'maxWait' and limited by request deadline of current thread
+     *
+     * @param timeout max wait time
+     * @param unit    time unit of timeout
+     * @return pooled connection
+     * @throws SQLException if failed(create failed,interrupt,wait timeout),then throw failed cause exception
+     */
+    public final Connection getConnection(final long timeout, final TimeUnit unit) throws SQLException {
+        if (unit == null) throw new IllegalArgumentException("Time unit can't be null");
+        return getConnection(null, null, unit.toNanos(timeout));
+    }
+
+    /**
+     * Get one connection whose session state matches labels,an idle matched connection is preferred,
+     * otherwise differing properties are applied to the got connection
+     *
+     * @param labels session state labels,null means default state
+     * @return pooled connection
+     * @throws SQLException if failed(create failed,interrupt,wait timeout),then throw failed cause exception
+     */
+    public final Connection getConnection(final ConnectionLabels labels) throws SQLException {
+        return getConnection(labels, null, maxWaitNs);
+    }
+
+    /**
+     * Get one connection with priority,returned connections are transferred to waiters of higher priority first
+     *
+     * @param priority borrower priority,null means default priority of current thread
+     * @return pooled connection
+     * @throws SQLException if failed(create failed,interrupt,wait timeout),then throw failed cause exception
+     */
+    public final Connection getConnection(final BorrowPriority priority) throws SQLException {
+        return getConnection(null, priority, maxWaitNs);
+    }
+
+    //set default borrow priority of current thread
+    public void setThreadBorrowPriority(final BorrowPriority priority) {
+        getBorrower().priority = priority != null ? priority.ordinal() : PRIORITY_NORMAL;
+    }
+
+    private Borrower getBorrower() {
         WeakReference<Borrower> r = threadLocal.get();
         Borrower b = (r != null) ? r.get() : null;
-        if (b != null) {
-            PooledConnection p = b.lastUsed;
-            if (p != null && p.state == CON_IDLE && ConStUpd.compareAndSet(p, CON_IDLE, CON_USING)) {
-                if (testOnBorrow(p)) return createProxyConnection(p, b);
-                b.lastUsed = null;
-            }
-        } else {
+        if (b == null) {
             b = new Borrower();
             threadLocal.set(new WeakReference<Borrower>(b));
         }
+        return b;
+    }
 
-        long deadline = nanoTime();
+    private Connection getConnection(final ConnectionLabels labels, final BorrowPriority priority, long waitNs) throws SQLException {
+        if (poolState.get() != POOL_NORMAL) throw PoolCloseException;
+        //wait in deadline of current request
+        final boolean inRequestDeadline = RequestDeadline.isSet();
+        final long requestDeadlineNanos = inRequestDeadline ? RequestDeadline.getDeadlineNanos() : 0L;
+        final long requestRemainNanos = inRequestDeadline ? requestDeadlineNanos - nanoTime() : Long.MAX_VALUE;
+        if (requestRemainNanos < waitNs) waitNs = requestRemainNanos;
+        if (waitNs <= 0L) throw RequestTimeoutException;
+        if (codel != null) waitNs = codel.limitWait(waitNs);
+
+        final Borrower b = getBorrower();
+        final int pri = priority != null ? priority.ordinal() : b.priority;
+        Connection con;
         try {
-            if (!semaphore.tryAcquire(maxWaitNs, NANOSECONDS))
-                throw RequestTimeoutException;
-        } catch (InterruptedException e) {
-            throw RequestInterruptException;
+            if (sharedSemaphore == null || pri == PRIORITY_HIGH) {
+                con = borrow(b, labels, pri, false, 0L, waitNs);
+            } else {//non high priority borrower takes a permit of shared capacity,which is released when connection returned
+                final long beginNanos = nanoTime();
+                acquirePermit(sharedSemaphore, waitNs);
+                boolean succeeded = false;
+                try {
+                    con = borrow(b, labels, pri, true, beginNanos, waitNs);
+                    succeeded = true;
+                } finally {
+                    if (!succeeded) sharedSemaphore.release();
+                }
+            }
+        } catch (SQLException e) {
+            if (codel != null && e == RequestTimeoutException) {
+                codel.record(waitNs);
+                updateSaturation();
+            }
+            throw e;
+        }
+        //statements of connection get query timeout from request deadline,which is consumed by borrow wait
+        if (inRequestDeadline) b.lastUsed.setRequestDeadline(requestDeadlineNanos);
+        return con;
+    }
+
+    //beginNanos:start time of borrowing,zero when not started
+    private Connection borrow(final Borrower b, final ConnectionLabels labels, final int pri, final boolean shared, long beginNanos, final long waitNs) throws SQLException {
+        //0:try to get from threadLocal cache
+        PooledConnection p = b.lastUsed;
+        if (p != null && p.state == CON_IDLE && (labels == null || p.matchLabels(labels)) && ConStUpd.compareAndSet(p, CON_IDLE, CON_USING)) {
+            if (testOnBorrow(p)) return createLabeledProxy(p, b, labels, shared, beginNanos);
+            b.lastUsed = null;
         }
+
+        if (beginNanos == 0L) beginNanos = nanoTime();
+        final long deadline = beginNanos + waitNs;
+        acquirePermit(semaphore, deadline - nanoTime());
+        boolean inWait = false;
         try {//semaphore acquired
+            //1:try to search one matched labels
+            p = labels != null ? searchLabeled(labels) : null;
+            if (p != null) return createLabeledProxy(p, b, labels, shared, beginNanos);
             //2:try search one or create one
-            PooledConnection p = searchOrCreate();
-            if (p != null) return createProxyConnection(p, b);
+            p = searchOrCreate(deadline);
+            if (p != null) return createLabeledProxy(p, b, labels, shared, beginNanos);
 
             //3:try to get one transferred connection
+            if (maxWaiters > 0) {
+                enterWait();
+                inWait = true;
+            }
             b.state = BOWER_NORMAL;
+            final ConcurrentLinkedQueue<Borrower> waitQueue = waitQueues[pri];
             waitQueue.offer(b);
             boolean failed = false;
             Throwable cause = null;
-            deadline += maxWaitNs;
             final Thread bth = b.thread;
 
             do {
@@ -388,7 +688,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                     p = (PooledConnection) s;
                     if (transferPolicy.tryCatch(p) && testOnBorrow(p)) {
                         waitQueue.remove(b);
-                        return createProxyConnection(p, b);
+                        return createLabeledProxy(p, b, labels, shared, beginNanos);
                     }
                 } else if (s instanceof Throwable) {
                     waitQueue.remove(b);
@@ -420,19 +720,141 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                 }//end (state == BOWER_NORMAL)
             } while (true);//while
         } finally {
+            if (inWait) exitWait();
             semaphore.release();
         }
     }
 
-    private final PooledConnection searchOrCreate() throws SQLException {
+    //acquire a permit in timeout,borrower is counted as a waiter when it has to wait
+    private void acquirePermit(final Semaphore s, final long timeoutNs) throws SQLException {
+        try {
+            if (maxWaiters == 0) {
+                if (!s.tryAcquire(timeoutNs, NANOSECONDS)) throw RequestTimeoutException;
+            } else if (!s.tryAcquire(0L, NANOSECONDS)) {
+                enterWait();
+                try {
+                    if (!s.tryAcquire(timeoutNs, NANOSECONDS)) throw RequestTimeoutException;
+                } finally {
+                    exitWait();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw RequestInterruptException;
+        }
+    }
+
+    //increase waiter count,borrower is rejected when waiters reach 'maxWaiters'
+    private void enterWait() throws SQLException {
+        int c;
+        do {
+            c = waitingCount.get();
+            if (c >= maxWaiters) {
+                updateSaturation();
+                throw PoolSaturatedException;
+            }
+        } while (!waitingCount.compareAndSet(c, c + 1));
+        if (c + 1 >= maxWaiters) updateSaturation();
+    }
+
+    private void exitWait() {
+        if (waitingCount.decrementAndGet() + 1 >= maxWaiters) updateSaturation();
+    }
+
+    //update saturation state and notify listener when it changed
+    private void updateSaturation() {
+        final boolean saturated = (codel != null && codel.isOverloaded()) || (maxWaiters > 0 && waitingCount.get() >= maxWaiters);
+        if (saturatedState.get() != saturated && saturatedState.compareAndSet(!saturated, saturated)) {
+            if (printRuntimeLog)
+                commonLog.info("BeeCP({})pool {} saturation", poolName, saturated ? "entered" : "exited");
+            if (saturationListener != null) {
+                try {
+                    saturationListener.onSaturationChanged(poolName, saturated);
+                } catch (Throwable e) {
+                    commonLog.warn("BeeCP({})saturation listener error", poolName, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * check pool whether saturated,which is cheap to be called by upstream before borrowing to shed load
+     *
+     * @return true,waiters reach 'maxWaiters' or a standing wait queue is detected
+     */
+    public boolean isSaturated() {
+        if (codel != null || maxWaiters > 0) updateSaturation();
+        return saturatedState.get();
+    }
+
+    //search an idle connection whose session state matches labels
+    private PooledConnection searchLabeled(final ConnectionLabels labels) {
+        final PooledConnection[] array = conArray;
+        for (int i = 0, l = array.length; i < l; ++i) {
+            PooledConnection p = array[i];
+            if (p.state == CON_IDLE && p.matchLabels(labels) && ConStUpd.compareAndSet(p, CON_IDLE, CON_USING)) {
+                if (testOnBorrow(p)) return p;
+            }
+        }
+        return null;
+    }
+
+    //apply labels(reset labeled state of last borrow when null) before creating proxy
+    //beginNanos:start time of borrowing,zero when got from thread local cache without wait
+    //shared:true,borrower holds a permit of shared capacity
+    private Connection createLabeledProxy(final PooledConnection p, final Borrower b, final ConnectionLabels labels, final boolean shared, final long beginNanos) throws SQLException {
+        if (semaphoreController != null) {
+            final long now = nanoTime();
+            semaphoreController.recordWait(beginNanos != 0L ? now - beginNanos : 0L);
+            p.borrowNanos = now;
+        }
+        if (codel != null && beginNanos != 0L) {
+            codel.record(nanoTime() - beginNanos);
+            if (codel.isOverloaded() != saturatedState.get()) updateSaturation();
+        }
+        if (p.supportRequestBoundary) {
+            try {
+                p.beginRequest();
+            } catch (SQLException e) {
+                if (b.lastUsed == p) b.lastUsed = null;
+                abandonOnReturn(p);
+                throw e;
+            }
+        }
+        if (labels != null || p.labels != null) {
+            try {
+                boolean changed = p.applyLabels(labels);
+                if (labels != null) {
+                    labelBorrowCount.incrementAndGet();
+                    if (!changed) labelHitCount.incrementAndGet();
+                }
+            } catch (SQLException e) {
+                if (b.lastUsed == p) b.lastUsed = null;
+                abandonOnReturn(p);
+                throw e;
+            }
+        }
+        p.holdSharedPermit = shared;
+        return createProxyConnection(p, b);
+    }
+
+    private final PooledConnection searchOrCreate(final long deadline) throws SQLException {
         final PooledConnection[] array = conArray;
         for (int i = 0, l = array.length; i < l; ++i) {
             PooledConnection p = array[i];
             if (p.state == CON_IDLE && ConStUpd.compareAndSet(p, CON_IDLE, CON_USING) && testOnBorrow(p))
                 return p;
         }
-        if (conArray.length < poolMaxSize)
-            return createPooledConn(CON_USING);
+        if (conArray.length < poolMaxSize) {
+            SQLException breakerCause = circuitBreakerCause;
+            if (breakerCause != null) throw breakerCause;//fail fast
+            if (createRateLimiter != null && !createRateLimiter.tryAcquire(deadline - nanoTime()))
+                return null;//wait transferred one
+            PooledConnection p = createPooledConn(CON_USING);
+            if (p == null && poolGroup != null && conArray.length < poolMaxSize && poolGroup.reclaimIdle(this))
+                p = createPooledConn(CON_USING);//retry after other member released
+            if (p == null && createRateLimiter != null) createRateLimiter.release();//pool or group is full
+            return p;
+        }
         return null;
     }
 
@@ -442,7 +864,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
             c = servantTryCount.get();
             if (c >= poolMaxSize) return;
         } while (!servantTryCount.compareAndSet(c, c + 1));
-        if (!waitQueue.isEmpty() && servantState.get() == THREAD_WAITING && servantState.compareAndSet(THREAD_WAITING, THREAD_WORKING))
+        if (existWaiter() && servantState.get() == THREAD_WAITING && servantState.compareAndSet(THREAD_WAITING, THREAD_WORKING))
             unpark(this);
     }
 
@@ -453,25 +875,54 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
      * @param p target connection need release
      */
     public final void recycle(final PooledConnection p) {
-        final Iterator<Borrower> iterator = waitQueue.iterator();
-        transferPolicy.beforeTransfer(p);
-        W:
-        while (iterator.hasNext()) {
-            final Borrower b = iterator.next();
-            Object state;
-            do {
-                if (p.state != unCatchStateCode) return;
-                state = b.state;
-                if (state != BOWER_NORMAL && state != BOWER_WAITING)
-                    continue W;
-            } while (!BorrowStUpd.compareAndSet(b, state, p));
-            if (state == BOWER_WAITING) unpark(b.thread);
+        if (p == refreshingConn && ConStUpd.compareAndSet(p, CON_USING, CON_CLOSED))//replaced by refresh thread
+            return;
+        if (p.retireInd && ConStUpd.compareAndSet(p, CON_USING, CON_CLOSED)) {//not replaced in refresh wait
+            removePooledConn(p, DESC_RM_REFRESH);
             return;
         }
+        if (conArray.length > poolMaxSize && ConStUpd.compareAndSet(p, CON_USING, CON_CLOSED)) {//pool shrunk
+            removePooledConn(p, DESC_RM_SHRINK);
+            return;
+        }
+        if (saturatedState.get()) updateSaturation();//maybe exit from saturation
+        transferPolicy.beforeTransfer(p);
+        for (ConcurrentLinkedQueue<Borrower> waitQueue : waitQueues) {//high priority first
+            final Iterator<Borrower> iterator = waitQueue.iterator();
+            W:
+            while (iterator.hasNext()) {
+                final Borrower b = iterator.next();
+                Object state;
+                do {
+                    if (p.state != unCatchStateCode) return;
+                    state = b.state;
+                    if (state != BOWER_NORMAL && state != BOWER_WAITING)
+                        continue W;
+                } while (!BorrowStUpd.compareAndSet(b, state, p));
+                if (state == BOWER_WAITING) unpark(b.thread);
+                return;
+            }
+        }
         transferPolicy.onFailedTransfer(p);
         tryWakeupServantThread();
     }
 
+    /**
+     * Connection reset by a worker thread after returned,it is invisible to borrowers
+     * in resetting,then recycled after reset
+     *
+     * @param p target connection need reset
+     */
+    final void recycleAfterReset(final PooledConnection p) {
+        p.state = CON_RESETTING;
+        ConnectionResetTask task = new ConnectionResetTask(p, this);
+        try {
+            resetExecutor.execute(task);
+        } catch (RejectedExecutionException e) {//pool closed
+            task.run();
+        }
+    }
+
     /**
      * Connection create failed by creator,then transfer the failed cause exception to one waiting borrower,
      * which will end wait and throw the exception.
@@ -479,21 +930,49 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
      * @param e: transfer Exception to waiter
      */
     private void transferException(final Throwable e) {
-        final Iterator<Borrower> iterator = waitQueue.iterator();
-        W:
-        while (iterator.hasNext()) {
-            final Borrower b = iterator.next();
-            Object state;
-            do {
-                state = b.state;
-                if (state != BOWER_NORMAL && state != BOWER_WAITING)
-                    continue W;
-            } while (!BorrowStUpd.compareAndSet(b, state, e));
-            if (state == BOWER_WAITING) unpark(b.thread);
-            return;
+        for (ConcurrentLinkedQueue<Borrower> waitQueue : waitQueues) {
+            final Iterator<Borrower> iterator = waitQueue.iterator();
+            W:
+            while (iterator.hasNext()) {
+                final Borrower b = iterator.next();
+                Object state;
+                do {
+                    state = b.state;
+                    if (state != BOWER_NORMAL && state != BOWER_WAITING)
+                        continue W;
+                } while (!BorrowStUpd.compareAndSet(b, state, e));
+                if (state == BOWER_WAITING) unpark(b.thread);
+                return;
+            }
         }
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ConcurrentLinkedQueue<Borrower>[] createWaitQueues() {
+        ConcurrentLinkedQueue<Borrower>[] queues = new ConcurrentLinkedQueue[BorrowPriority.values().length];
+        for (int i = 0; i < queues.length; i++)
+            queues[i] = new ConcurrentLinkedQueue<Borrower>();
+        return queues;
+    }
+
+    private boolean existWaiter() {
+        for (ConcurrentLinkedQueue<Borrower> waitQueue : waitQueues)
+            if (!waitQueue.isEmpty()) return true;
+        return false;
+    }
+
+    private int getWaiterSize() {
+        int size = 0;
+        for (ConcurrentLinkedQueue<Borrower> waitQueue : waitQueues)
+            size += waitQueue.size();
+        return size;
+    }
+
+    //called by pooled connection on return when it holds a permit of shared capacity
+    final void releaseSharedPermit() {
+        sharedSemaphore.release();
+    }
+
     /**
      * When exception occur on return,then remove it from pool
      *
@@ -504,6 +983,44 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         tryWakeupServantThread();
     }
 
+    /**
+     * called by pooled connection when a fatal error thrown from it,a burst of fatal errors
+     * in a window triggers one validation sweep of idle connections
+     *
+     * @param p connection marked broken,which is removed on close
+     * @param e fatal error
+     */
+    final void onFatalError(final PooledConnection p, final SQLException e) {
+        if (printRuntimeLog)
+            commonLog.warn("BeeCP({})fatal error on connection:{},it will be removed on close,cause:", poolName, p, e);
+        if (sweepExecutor == null) return;
+
+        final long now = nanoTime();
+        final long end = fatalErrorWindowEnd.get();
+        if (now - end >= 0L && fatalErrorWindowEnd.compareAndSet(end, now + fatalErrorBurstWindowNs))
+            fatalErrorCount.set(0);//new window
+        if (fatalErrorCount.incrementAndGet() == fatalErrorBurstSize) sweepIdleConnections();
+    }
+
+    //validate idle connections by sweep workers in parallel,they are invisible to borrowers in validation
+    private void sweepIdleConnections() {
+        if (poolState.get() != POOL_NORMAL) return;
+        if (printRuntimeLog)
+            commonLog.info("BeeCP({})fatal error burst,begin to validate idle connections", poolName);
+        final PooledConnection[] array = conArray;
+        for (int i = 0, l = array.length; i < l; i++) {
+            PooledConnection p = array[i];
+            if (p.state == CON_IDLE && ConStUpd.compareAndSet(p, CON_IDLE, CON_RESETTING)) {
+                IdleConnectionValidateTask task = new IdleConnectionValidateTask(p, this);
+                try {
+                    sweepExecutor.execute(task);
+                } catch (RejectedExecutionException e) {//pool closed
+                    task.run();
+                }
+            }
+        }
+    }
+
     /**
      * Check one borrowed connection alive state,if not alive,then remove it from pool
      *
@@ -544,7 +1061,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
             while (servantState.get() == THREAD_WORKING && servantTryCount.get() > 0) {
                 try {
                     servantTryCount.decrementAndGet();
-                    PooledConnection p = searchOrCreate();
+                    PooledConnection p = searchOrCreate(nanoTime() + maxWaitNs);
                     if (p != null)
                         recycle(p);
                 } catch (Throwable e) {
@@ -618,10 +1135,157 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         }
     }
 
+    /**
+     * Replace all connections gradually in a background thread,a new connection is created
+     * before an old idle one is closed,using ones are replaced after they return,
+     * and ones still in use after max wait time are closed on return
+     *
+     * @return future of refreshing,its result is the count of replaced connections
+     */
+    public Future<Integer> refreshAllConnections() {
+        FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+            public Integer call() throws Exception {
+                return refreshConnections();
+            }
+        });
+        Thread refreshThread = new Thread(task, poolName + "-refresh");
+        refreshThread.setDaemon(true);
+        refreshThread.start();
+        return task;
+    }
+
+    private int refreshConnections() throws SQLException {
+        if (poolState.get() != POOL_NORMAL) throw PoolCloseException;
+        if (!refreshing.compareAndSet(false, true)) throw new SQLException("Pool is in refreshing");
+        commonLog.info("BeeCP({})begin to refresh connections", poolName);
+        int count = 0, skippedCount = 0, retiredCount = 0;
+        Connection con = null;
+        try {
+            final long pollNs = MILLISECONDS.toNanos(10);
+            PooledConnection[] array = conArray;
+            for (int i = 0, l = array.length; i < l && poolState.get() == POOL_NORMAL; i++) {
+                if (con == null) {//create new one before closing old one
+                    con = createRefreshConn();
+                    if (con == null) {//not admitted in max wait time
+                        skippedCount++;
+                        continue;
+                    }
+                }
+
+                PooledConnection p = array[i];
+                refreshingConn = p;//using one is closed in recycle
+                try {
+                    final long waitDeadline = nanoTime() + maxWaitNs;
+                    while (poolState.get() == POOL_NORMAL) {
+                        int state = p.state;
+                        if (state == CON_CLOSED || state == CON_IDLE && ConStUpd.compareAndSet(p, CON_IDLE, CON_CLOSED)) {
+                            Connection newCon = con;
+                            con = null;
+                            replacePooledConn(p, newCon);
+                            count++;
+                            break;
+                        }
+                        if (waitDeadline - nanoTime() <= 0L) {//still in use after max wait,removed on return
+                            p.retireInd = true;
+                            if (p.state == CON_CLOSED) continue;//closed in recycle before marked
+                            retiredCount++;
+                            break;
+                        }
+                        parkNanos(pollNs);
+                    }
+                } finally {
+                    refreshingConn = null;
+                }
+                if (i < l - 1) parkNanos(delayTimeForNextRefreshNs);
+            }
+            if (poolState.get() != POOL_NORMAL) throw PoolCloseException;
+            commonLog.info("BeeCP({})has refreshed {} connections,{} marked to close on return,{} skipped", poolName, count, retiredCount, skippedCount);
+            return count;
+        } finally {
+            if (con != null) {
+                closeRawConn(con);
+                if (poolGroup != null) poolGroup.release(this);
+            }
+            refreshing.set(false);
+        }
+    }
+
+    //create a raw connection for refresh,admitted by circuit breaker,creation rate limiter and pool group like
+    //'createPooledConn',return null when not admitted in max wait time,its group permit is owned by caller
+    private Connection createRefreshConn() throws SQLException {
+        SQLException breakerCause = circuitBreakerCause;
+        if (breakerCause != null) throw breakerCause;
+        if (createRateLimiter != null && !createRateLimiter.tryAcquire(maxWaitNs)) return null;
+        if (poolGroup != null && !poolGroup.tryAcquire(this)) {//group is full
+            if (!poolGroup.reclaimIdle(this) || !poolGroup.tryAcquire(this)) {
+                if (createRateLimiter != null) createRateLimiter.release();
+                return null;
+            }
+        }
+        synchronized (this) {
+            try {
+                Connection con = conFactory.create();
+                if (circuitBreakerFailureThreshold > 0) createFailCount.set(0);
+                return con;
+            } catch (Throwable e) {
+                if (poolGroup != null) poolGroup.release(this);
+                ConnectionCreateFailedException failedException = new ConnectionCreateFailedException(e);
+                if (circuitBreakerFailureThreshold > 0 && poolState.get() == POOL_NORMAL)
+                    onCreateFailed(failedException);//failures in pool initialization not counted
+                throw failedException;
+            }
+        }
+    }
+
+    //replace old connection(in closed state) with a new raw connection(hold a group permit),then close old one
+    private void replacePooledConn(final PooledConnection old, final Connection con) throws SQLException {
+        PooledConnection p;
+        try {
+            p = clonePooledConn.copy(con, CON_USING);
+        } catch (Throwable e) {
+            closeRawConn(con);
+            if (poolGroup != null) poolGroup.release(this);
+            removePooledConn(old, DESC_RM_REFRESH);
+            throw e instanceof SQLException ? (SQLException) e : new SQLException(e);
+        }
+        boolean added = false;
+        synchronized (this) {
+            int l = conArray.length;
+            for (int i = 0; i < l; i++) {
+                if (conArray[i] == old) {
+                    PooledConnection[] arrayNew = new PooledConnection[l];
+                    arraycopy(conArray, 0, arrayNew, 0, l);
+                    arrayNew[i] = p;
+                    conArray = arrayNew;
+                    if (poolGroup != null) poolGroup.release(this);//permit of old one
+                    added = true;
+                    break;
+                }
+            }
+            if (!added && l < poolMaxSize) {//old one removed by others
+                PooledConnection[] arrayNew = new PooledConnection[l + 1];
+                arraycopy(conArray, 0, arrayNew, 0, l);
+                arrayNew[l] = p;
+                conArray = arrayNew;
+                added = true;
+            }
+        }
+
+        if (added) {
+            if (printRuntimeLog)
+                commonLog.info("BeeCP({}))has replaced pooled connection:{} with {},reason:{}", poolName, old, p, DESC_RM_REFRESH);
+            old.onBeforeRemove();
+            recycle(p);
+        } else {
+            closeRawConn(con);
+            if (poolGroup != null) poolGroup.release(this);
+        }
+    }
+
     //remove all connections from pool
     private void removeAllConnections(boolean force, String source) {
         semaphore.interruptWaitingThreads();
-        while (!waitQueue.isEmpty()) transferException(PoolCloseException);
+        while (existWaiter()) transferException(PoolCloseException);
 
         while (conArray.length > 0) {
             PooledConnection[] array = conArray;
@@ -659,6 +1323,10 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                 removeAllConnections(poolConfig.isForceCloseUsingOnClear(), DESC_RM_DESTROY);
                 networkTimeoutExecutor.getQueue().clear();
                 networkTimeoutExecutor.shutdownNow();
+                if (resetExecutor != null) resetExecutor.shutdown();
+                if (sweepExecutor != null) sweepExecutor.shutdown();
+                if (slowSqlLogAppender != null) slowSqlLogAppender.close();
+                if (poolGroup != null) poolGroup.unregister(this);
 
                 try {
                     Runtime.getRuntime().removeShutdownHook(exitHook);
@@ -692,6 +1360,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         monitorVo.setUsingSize(totSize - idleSize);
         monitorVo.setSemaphoreWaiterSize(getSemaphoreWaitingSize());
         monitorVo.setTransferWaiterSize(getTransferWaitingSize());
+        monitorVo.setConcurrencyLimit(semaphoreSize);
         return monitorVo;
     }
 
@@ -712,8 +1381,12 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         return (active > 0) ? active : 0;
     }
 
+    public int getBorrowSemaphoreSize() {
+        return semaphoreSize;
+    }
+
     public int getSemaphoreAcquiredSize() {
-        return poolConfig.getBorrowSemaphoreSize() - semaphore.availablePermits();
+        return semaphoreSize - semaphore.availablePermits();
     }
 
     public int getSemaphoreWaitingSize() {
@@ -722,10 +1395,12 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 
     public int getTransferWaitingSize() {
         int size = 0;
-        Iterator<Borrower> iterator = waitQueue.iterator();
-        while (iterator.hasNext()) {
-            Borrower borrower = iterator.next();
-            if (borrower.state instanceof BorrowerState) size++;
+        for (ConcurrentLinkedQueue<Borrower> waitQueue : waitQueues) {
+            Iterator<Borrower> iterator = waitQueue.iterator();
+            while (iterator.hasNext()) {
+                Borrower borrower = iterator.next();
+                if (borrower.state instanceof BorrowerState) size++;
+            }
         }
         return size;
     }
@@ -735,6 +1410,121 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         this.printRuntimeLog = indicator;
     }
 
+    public String[] getSqlStatisticTopByTotalTime() {
+        return sqlStatisticCollector == null ? new String[0] : toStringArray(sqlStatisticCollector.getTopByTotalTime(poolConfig.getSqlStatisticTopSize()));
+    }
+
+    public String[] getSqlStatisticTopByCount() {
+        return sqlStatisticCollector == null ? new String[0] : toStringArray(sqlStatisticCollector.getTopByCount(poolConfig.getSqlStatisticTopSize()));
+    }
+
+    public String[] getSqlStatisticTopByMaxTime() {
+        return sqlStatisticCollector == null ? new String[0] : toStringArray(sqlStatisticCollector.getTopByMaxTime(poolConfig.getSqlStatisticTopSize()));
+    }
+
+    public void clearSqlStatistic() {
+        if (sqlStatisticCollector != null) sqlStatisticCollector.clear();
+    }
+
+    public long getLabelBorrowCount() {
+        return labelBorrowCount.get();
+    }
+
+    public long getLabelHitCount() {
+        return labelHitCount.get();
+    }
+
+    public double getLabelHitRate() {
+        long borrowCount = labelBorrowCount.get();
+        return borrowCount == 0L ? 0D : (double) labelHitCount.get() / borrowCount;
+    }
+
+    public boolean isCircuitBreakerOpen() {
+        return circuitBreakerCause != null;
+    }
+
+    public void setMaxActive(int maxActive) {
+        if (maxActive <= 0) throw new IllegalArgumentException("maxActive must be greater than zero");
+        int oldMaxSize;
+        synchronized (this) {//creation is under this lock
+            if (maxActive <= poolConfig.getHighPriorityReservedSize())
+                throw new IllegalArgumentException("maxActive must be greater than highPriorityReservedSize");
+            oldMaxSize = poolMaxSize;
+            if (sharedSemaphore != null) {//shared capacity follows max size,reserved size unchanged
+                int delta = maxActive - oldMaxSize;
+                if (delta > 0) {
+                    sharedSemaphore.release(delta);
+                } else if (delta < 0) {//permits maybe negative until holders release
+                    sharedSemaphore.reducePermits(-delta);
+                }
+            }
+            poolMaxSize = maxActive;
+            poolConfig.setMaxActive(maxActive);
+            poolConfig.setBorrowSemaphoreSize(semaphoreSize);//restore,which reset in 'setMaxActive'
+        }
+        commonLog.info("BeeCP({})max size changed from {} to {}", poolName, oldMaxSize, maxActive);
+
+        if (maxActive > oldMaxSize) {//wake up servant to create connections for waiters
+            for (int i = getWaiterSize(); i > 0; i--)
+                tryWakeupServantThread();
+        } else {//close surplus idle connections,using ones are closed on return
+            PooledConnection[] array = conArray;
+            for (int i = 0, l = array.length; i < l && conArray.length > poolMaxSize; i++) {
+                PooledConnection p = array[i];
+                if (p.state == CON_IDLE && ConStUpd.compareAndSet(p, CON_IDLE, CON_CLOSED))
+                    removePooledConn(p, DESC_RM_SHRINK);
+            }
+        }
+    }
+
+    public void setBorrowSemaphoreSize(int borrowSemaphoreSize) {
+        if (borrowSemaphoreSize <= 0)
+            throw new IllegalArgumentException("borrowSemaphoreSize must be greater than zero");
+        if (semaphoreController != null)//size would be overwritten by adjust thread
+            throw new IllegalStateException("Not support to change semaphore size of adaptive semaphore");
+        int oldSize = resizeSemaphore(borrowSemaphoreSize);
+        commonLog.info("BeeCP({})semaphore size changed from {} to {}", poolName, oldSize, borrowSemaphoreSize);
+    }
+
+    //change permit size of semaphore,return old size
+    private int resizeSemaphore(int size) {
+        synchronized (semaphore) {
+            int oldSize = semaphoreSize;
+            int delta = size - oldSize;
+            if (delta > 0) {
+                semaphore.release(delta);
+            } else if (delta < 0) {//permits maybe negative until holders release
+                semaphore.reducePermits(-delta);
+            }
+            semaphoreSize = size;
+            poolConfig.setBorrowSemaphoreSize(size);
+            return oldSize;
+        }
+    }
+
+    //called by pooled connection on return when adaptive semaphore
+    final void recordHoldTime(final long nanos) {
+        semaphoreController.recordHold(nanos);
+    }
+
+    //adjust semaphore size with samples of last window,called by adjust thread
+    private void adjustSemaphoreSize(final long windowNanos) {
+        int curSize = semaphoreSize;
+        int newSize = semaphoreController.computeSize(curSize, semaphore.getQueueLength(), getWaiterSize(), windowNanos);
+        if (newSize != curSize) {
+            resizeSemaphore(newSize);
+            if (printRuntimeLog)
+                commonLog.info("BeeCP({})adaptive semaphore size changed from {} to {}", poolName, curSize, newSize);
+        }
+    }
+
+    private String[] toStringArray(SqlStatistic[] statistics) {
+        String[] statisticArray = new String[statistics.length];
+        for (int i = 0; i < statistics.length; i++)
+            statisticArray[i] = statistics[i].toString();
+        return statisticArray;
+    }
+
     private void registerJmx() {
         if (poolConfig.isEnableJmx()) {
             MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
@@ -827,6 +1617,10 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
             super(permits, fair);
         }
 
+        public void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+
         public void interruptWaitingThreads() {
             Iterator<Thread> iterator = super.getQueuedThreads().iterator();
             while (iterator.hasNext()) {
@@ -860,6 +1654,94 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
         }
     }
 
+    //probe connection creation with exponential backoff and jitter until success
+    private static final class CircuitBreakerProbeTask implements Runnable {
+        private FastConnectionPool pool;
+
+        public CircuitBreakerProbeTask(FastConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        public void run() {
+            pool.wakeupWaitersOnBreakerOpen();
+            final long maxDelayNs = MILLISECONDS.toNanos(pool.poolConfig.getCircuitBreakerProbeMaxDelay());
+            long delayNs = MILLISECONDS.toNanos(pool.poolConfig.getCircuitBreakerProbeDelay());
+            while (pool.poolState.get() != POOL_CLOSED && pool.circuitBreakerCause != null) {
+                long halfDelayNs = delayNs >>> 1;
+                parkNanos(halfDelayNs + ThreadLocalRandom.current().nextLong(halfDelayNs + 1));
+                if (pool.poolState.get() == POOL_CLOSED || pool.probeCreate()) break;
+                delayNs = Math.min(delayNs << 1, maxDelayNs);
+            }
+        }
+    }
+
+    //adjust size of adaptive semaphore at fixed interval
+    private static final class SemaphoreAdjustThread extends Thread {
+        private FastConnectionPool pool;
+
+        public SemaphoreAdjustThread(FastConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        public void run() {
+            final long intervalNanos = MILLISECONDS.toNanos(pool.poolConfig.getBorrowSemaphoreAdjustInterval());
+            long windowBegin = nanoTime();
+            while (pool.poolState.get() != POOL_CLOSED) {
+                parkNanos(intervalNanos);
+                if (pool.poolState.get() == POOL_CLOSED) break;
+                final long now = nanoTime();
+                try {
+                    pool.adjustSemaphoreSize(now - windowBegin);
+                } catch (Throwable e) {
+                    commonLog.warn("BeeCP({})failed to adjust semaphore size", pool.poolName, e);
+                }
+                windowBegin = now;
+            }
+        }
+    }
+
+    private static final class ConnectionResetTask implements Runnable {
+        private final PooledConnection p;
+        private final FastConnectionPool pool;
+
+        ConnectionResetTask(PooledConnection p, FastConnectionPool pool) {
+            this.p = p;
+            this.pool = pool;
+        }
+
+        public void run() {
+            try {
+                p.resetRawConn();
+            } catch (Throwable e) {
+                if (pool.printRuntimeLog)
+                    commonLog.warn("BeeCP({})failed to reset connection on return,cause:", pool.poolName, e);
+                pool.abandonOnReturn(p);
+                return;
+            }
+            p.state = CON_USING;
+            pool.recycle(p);
+        }
+    }
+
+    private static final class IdleConnectionValidateTask implements Runnable {
+        private final PooledConnection p;
+        private final FastConnectionPool pool;
+
+        IdleConnectionValidateTask(PooledConnection p, FastConnectionPool pool) {
+            this.p = p;
+            this.pool = pool;
+        }
+
+        public void run() {
+            if (pool.conTester.isAlive(p)) {
+                p.state = CON_USING;
+                pool.recycle(p);
+            } else {
+                pool.abandonOnReturn(p);
+            }
+        }
+    }
+
     /**
      * Hook when JVM exit
      */
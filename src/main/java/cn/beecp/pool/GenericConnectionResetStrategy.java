@@ -0,0 +1,43 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Reset dirty properties one by one through JDBC methods
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+class GenericConnectionResetStrategy implements ConnectionResetStrategy {
+
+    public void reset(final PooledConnection p, final boolean[] resetInd) throws SQLException {
+        final Connection raw = p.raw;
+        if (resetInd[0]) //reset autoCommit
+            raw.setAutoCommit(p.defAutoCommit);
+        if (resetInd[1])
+            raw.setTransactionIsolation(p.defTransactionIsolation);
+        if (resetInd[2]) //reset readonly
+            raw.setReadOnly(p.defReadOnly);
+        resetOthers(p, resetInd);
+    }
+
+    //reset catalog,schema,networkTimeout
+    final void resetOthers(final PooledConnection p, final boolean[] resetInd) throws SQLException {
+        final Connection raw = p.raw;
+        if (resetInd[3]) //reset catalog
+            raw.setCatalog(p.defCatalog);
+        //for JDK1.7 begin
+        if (resetInd[4]) //reset schema
+            raw.setSchema(p.defSchema);
+        if (resetInd[5]) //reset networkTimeout
+            raw.setNetworkTimeout(p.networkTimeoutExecutor, p.defNetworkTimeout);
+        //for JDK1.7 end
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.RawConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.beecp.pool.PoolStaticCenter.commonLog;
+import static cn.beecp.pool.PoolStaticCenter.oclose;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Driver ConnectionFactory on multiple hosts
+ * <p>
+ * 1) host is selected by round-robin or least connections(count of created and not closed connections,
+ * which is decreased when pool closes a connection)
+ * 2) host is marked down after connect failed,then skipped in a backoff time,which is doubled on
+ * next failure until max backoff,when all hosts are down,the one with earliest retry time is tried
+ * 3) failed connect is retried on other hosts in one creation
+ * 4) hedged creation:when connect on a host not done in hedge delay,a second host is raced,
+ * first connection is returned and a late one is closed
+ *
+ * @author Chris.liao
+ * @version 1.0
+ */
+public final class MultiHostConnectionFactory implements RawConnectionFactory, RawConnectionCloseListener {
+    public static final String POLICY_ROUND_ROBIN = "roundRobin";
+    public static final String POLICY_LEAST_CONNECTIONS = "leastConnections";
+
+    //hosts
+    private final Host[] hosts;
+    //connection driver
+    private final Driver driver;
+    //connection extra properties
+    private final Properties properties;
+    //indicator,true:least connections,false:round-robin
+    private final boolean leastConnections;
+    //nanoseconds:backoff of first failure
+    private final long downBackoffNanos;
+    //nanoseconds:max backoff
+    private final long downMaxBackoffNanos;
+    //nanoseconds:delay to race second host,zero means not hedge
+    private final long hedgeDelayNanos;
+    //round-robin index
+    private final AtomicInteger nextIndex = new AtomicInteger(0);
+    //workers of hedged creation
+    private final ThreadPoolExecutor hedgeExecutor;
+    //host of created and not closed connections,only tracked in least connections policy
+    private final Map<Connection, Host> connectionHostMap = Collections.synchronizedMap(new IdentityHashMap<Connection, Host>());
+
+    //Constructor
+    public MultiHostConnectionFactory(String[] urls, Driver driver, Properties properties, String selectPolicy,
+                                      long downBackoffMs, long downMaxBackoffMs, long hedgeDelayMs) {
+        if (urls == null || urls.length == 0) throw new IllegalArgumentException("Host urls can't be empty");
+        this.hosts = new Host[urls.length];
+        for (int i = 0; i < urls.length; i++)
+            hosts[i] = new Host(i, urls[i]);
+        this.driver = driver;
+        this.properties = properties;
+        this.leastConnections = POLICY_LEAST_CONNECTIONS.equals(selectPolicy);
+        this.downBackoffNanos = MILLISECONDS.toNanos(downBackoffMs);
+        this.downMaxBackoffNanos = MILLISECONDS.toNanos(Math.max(downBackoffMs, downMaxBackoffMs));
+        this.hedgeDelayNanos = urls.length > 1 ? MILLISECONDS.toNanos(hedgeDelayMs) : 0L;
+        if (hedgeDelayNanos > 0L) {
+            this.hedgeExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread th = new Thread(r, "BeeCP-hostConnectThread");
+                    th.setDaemon(true);
+                    return th;
+                }
+            });
+        } else {
+            this.hedgeExecutor = null;
+        }
+    }
+
+    //create one connection
+    public final Connection create() throws SQLException {
+        final boolean[] tried = new boolean[hosts.length];
+        if (hedgeExecutor != null) return hedgeCreate(tried);
+
+        SQLException cause = null;
+        for (int i = 0; i < hosts.length; i++) {
+            Host host = select(tried);
+            try {
+                return connect(host);
+            } catch (SQLException e) {
+                cause = e;
+            }
+        }
+        throw cause;
+    }
+
+    //called by pool after a created connection closed
+    public final void onClosed(final Connection con) {
+        if (!leastConnections) return;
+        Host host = connectionHostMap.remove(con);
+        if (host != null) host.connectionSize.decrementAndGet();
+    }
+
+    //count of created and not closed connections on each host(tracked in least connections policy only),for monitor
+    public final int[] getHostConnectionSizes() {
+        int[] sizes = new int[hosts.length];
+        for (int i = 0; i < hosts.length; i++)
+            sizes[i] = hosts[i].connectionSize.get();
+        return sizes;
+    }
+
+    //true,host is in backoff time after connect failed
+    public final boolean[] getHostDownStates() {
+        final long now = nanoTime();
+        boolean[] states = new boolean[hosts.length];
+        for (int i = 0; i < hosts.length; i++)
+            states[i] = hosts[i].isDown(now);
+        return states;
+    }
+
+    private Connection hedgeCreate(final boolean[] tried) throws SQLException {
+        final CompletionService<Connection> service = new ExecutorCompletionService<Connection>(hedgeExecutor);
+        int pending = 0, triedCount = 0;
+        SQLException cause = null;
+        try {
+            service.submit(new ConnectTask(this, select(tried)));
+            pending++;
+            triedCount++;
+            while (pending > 0) {
+                Future<Connection> future = triedCount < hosts.length ? service.poll(hedgeDelayNanos, NANOSECONDS) : service.take();
+                if (future != null) {
+                    pending--;
+                    try {
+                        Connection con = future.get();
+                        if (pending > 0) hedgeExecutor.execute(new LateConnectionCloseTask(this, service, pending));
+                        return con;
+                    } catch (ExecutionException e) {
+                        Throwable failure = e.getCause();
+                        cause = failure instanceof SQLException ? (SQLException) failure : new SQLException(failure);
+                        if (triedCount == hosts.length) continue;//wait pending ones
+                    }
+                }
+                //hedge delay elapsed or connect failed,race next host
+                service.submit(new ConnectTask(this, select(tried)));
+                pending++;
+                triedCount++;
+            }
+            throw cause;
+        } catch (InterruptedException e) {
+            if (pending > 0) hedgeExecutor.execute(new LateConnectionCloseTask(this, service, pending));
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during connection creation", e);
+        } catch (RejectedExecutionException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private Connection connect(final Host host) throws SQLException {
+        try {
+            Connection con = driver.connect(host.url, properties);
+            if (con == null) throw new SQLException("jdbcUrl(" + host.url + ")can not match driver:" + driver.getClass().getName());
+            if (leastConnections) {
+                connectionHostMap.put(con, host);
+                host.connectionSize.incrementAndGet();
+            }
+            host.onConnected();
+            return con;
+        } catch (SQLException e) {
+            host.onFailed(downBackoffNanos, downMaxBackoffNanos);
+            throw e;
+        } catch (RuntimeException e) {
+            host.onFailed(downBackoffNanos, downMaxBackoffNanos);
+            throw new SQLException(e);
+        }
+    }
+
+    //select an untried host,which is marked as tried
+    private Host select(final boolean[] tried) {
+        final long now = nanoTime();
+        final int size = hosts.length;
+        final int start = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % size;//rotate ties in least connections
+
+        Host selected = null, earliestDown = null;
+        int selectedSize = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Host host = hosts[(start + i) % size];
+            if (tried[host.index]) continue;
+            if (host.isDown(now)) {
+                if (earliestDown == null || host.retryTime - earliestDown.retryTime < 0L) earliestDown = host;
+            } else if (!leastConnections) {
+                selected = host;
+                break;
+            } else {
+                int conSize = host.connectionSize.get();
+                if (conSize < selectedSize) {
+                    selected = host;
+                    selectedSize = conSize;
+                }
+            }
+        }
+        if (selected == null) selected = earliestDown;
+        tried[selected.index] = true;
+        return selected;
+    }
+
+    private static final class Host {
+        final int index;
+        final String url;
+        //count of created and not closed connections on host in least connections policy
+        final AtomicInteger connectionSize = new AtomicInteger(0);
+        volatile long retryTime;
+        volatile boolean down;
+        int failCount;
+
+        Host(int index, String url) {
+            this.index = index;
+            this.url = url;
+        }
+
+        boolean isDown(long now) {
+            return down && now - retryTime < 0L;
+        }
+
+        void onConnected() {
+            if (down) {
+                synchronized (this) {
+                    failCount = 0;
+                    down = false;
+                }
+                commonLog.info("BeeCP host({})is up", url);
+            }
+        }
+
+        synchronized void onFailed(long backoffNanos, long maxBackoffNanos) {
+            final int shift = Math.min(failCount++, 30);
+            final long backoff = backoffNanos << shift;
+            retryTime = nanoTime() + (backoff <= 0L || backoff > maxBackoffNanos ? maxBackoffNanos : backoff);
+            if (!down) {
+                down = true;
+                commonLog.warn("BeeCP host({})is marked down", url);
+            }
+        }
+    }
+
+    private static final class ConnectTask implements Callable<Connection> {
+        private final MultiHostConnectionFactory factory;
+        private final Host host;
+
+        ConnectTask(MultiHostConnectionFactory factory, Host host) {
+            this.factory = factory;
+            this.host = host;
+        }
+
+        public Connection call() throws SQLException {
+            return factory.connect(host);
+        }
+    }
+
+    //close connections created after another host won the race
+    private static final class LateConnectionCloseTask implements Runnable {
+        private final MultiHostConnectionFactory factory;
+        private final CompletionService<Connection> service;
+        private final int pending;
+
+        LateConnectionCloseTask(MultiHostConnectionFactory factory, CompletionService<Connection> service, int pending) {
+            this.factory = factory;
+            this.service = service;
+            this.pending = pending;
+        }
+
+        public void run() {
+            for (int i = 0; i < pending; i++) {
+                try {
+                    Connection con = service.take().get();
+                    oclose(con);
+                    factory.onClosed(con);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    //host marked down in connect
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static java.sql.Connection.*;
+
+/**
+ * Reset strategy of MySQL Connector/J,when more than one of autoCommit,isolation and
+ * readOnly are dirty,they are reset by one 'SET' statement(one round trip).
+ * <p>
+ * Only used when driver session state is not cached locally('useLocalSessionState=false',
+ * default),then driver reads them from server status or server,otherwise generic reset.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class MysqlConnectionResetStrategy extends GenericConnectionResetStrategy {
+    private final String isolationVariable;
+    private final String readOnlyVariable;
+
+    MysqlConnectionResetStrategy(int serverMajorVersion) {
+        //variables renamed since 5.7.20,old names removed in 8.0
+        boolean newName = serverMajorVersion >= 8;
+        this.isolationVariable = newName ? "transaction_isolation" : "tx_isolation";
+        this.readOnlyVariable = newName ? "transaction_read_only" : "tx_read_only";
+    }
+
+    private static String getIsolationName(int level) {
+        switch (level) {
+            case TRANSACTION_READ_UNCOMMITTED:
+                return "READ-UNCOMMITTED";
+            case TRANSACTION_READ_COMMITTED:
+                return "READ-COMMITTED";
+            case TRANSACTION_REPEATABLE_READ:
+                return "REPEATABLE-READ";
+            case TRANSACTION_SERIALIZABLE:
+                return "SERIALIZABLE";
+            default:
+                return null;
+        }
+    }
+
+    public void reset(final PooledConnection p, final boolean[] resetInd) throws SQLException {
+        int dirtySize = (resetInd[0] ? 1 : 0) + (resetInd[1] ? 1 : 0) + (resetInd[2] ? 1 : 0);
+        String isolationName = getIsolationName(p.defTransactionIsolation);
+        if (dirtySize < 2 || (resetInd[1] && isolationName == null)) {
+            super.reset(p, resetInd);
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(96).append("SET ");
+        if (resetInd[0])
+            sql.append("autocommit=").append(p.defAutoCommit ? 1 : 0);
+        if (resetInd[1]) {
+            if (resetInd[0]) sql.append(',');
+            sql.append("SESSION ").append(isolationVariable).append("='").append(isolationName).append('\'');
+        }
+        if (resetInd[2]) {
+            if (resetInd[0] || resetInd[1]) sql.append(',');
+            sql.append("SESSION ").append(readOnlyVariable).append('=').append(p.defReadOnly ? 1 : 0);
+        }
+
+        final Connection raw = p.raw;
+        Statement st = raw.createStatement();
+        try {
+            st.execute(sql.toString());
+        } finally {
+            st.close();
+        }
+        resetOthers(p, resetInd);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.BeeDataSourceConfigException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Pool group,which limits total size of connections in member pools(set by
+ * 'BeeDataSourceConfig.setPoolGroup'),each member pool has a reserved min size
+ * which can be always created,and it is limited by its own 'maxActive'.
+ * <p>
+ * When group is full,a member pool tries to close an idle connection of other
+ * member pools which are over their reserved min size,then creates its own.
+ * Lock order: pool lock first,then group lock.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class PoolGroup {
+    private final String groupName;
+    private final int maxSize;
+    private final HashMap<FastConnectionPool, Member> memberMap = new HashMap<FastConnectionPool, Member>();
+    private int totalSize;
+    //sum of reserved min sizes which not be used by members
+    private int unusedReservedSize;
+
+    public PoolGroup(String groupName, int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Group max size must be greater than zero");
+        this.groupName = groupName;
+        this.maxSize = maxSize;
+    }
+
+    /******************************************************************************************
+     *                                                                                        *
+     *                        Below are called by member pools                                *
+     *                                                                                        *
+     ******************************************************************************************/
+
+    synchronized void register(FastConnectionPool pool, int minSize) throws BeeDataSourceConfigException {
+        if (memberMap.containsKey(pool)) return;
+        int reservedSize = minSize;
+        for (Member member : memberMap.values())
+            reservedSize += member.minSize;
+        if (reservedSize > maxSize)
+            throw new BeeDataSourceConfigException("Sum of poolGroupMinSize(" + reservedSize + ")can't be greater than max size(" + maxSize + ")of pool group:" + groupName);
+
+        memberMap.put(pool, new Member(pool, minSize));
+        unusedReservedSize += minSize;
+    }
+
+    synchronized void unregister(FastConnectionPool pool) {
+        Member member = memberMap.remove(pool);
+        if (member != null) {
+            totalSize -= member.size;
+            if (member.size < member.minSize) unusedReservedSize -= member.minSize - member.size;
+        }
+    }
+
+    //called before creating a connection in pool,return false when group is full
+    synchronized boolean tryAcquire(FastConnectionPool pool) {
+        Member member = memberMap.get(pool);
+        if (member == null) return false;
+        if (member.size < member.minSize) {//use reserved size
+            unusedReservedSize--;
+        } else if (totalSize + unusedReservedSize >= maxSize) {
+            return false;
+        }
+        member.size++;
+        totalSize++;
+        return true;
+    }
+
+    //called after a connection removed from pool or failed to create
+    synchronized void release(FastConnectionPool pool) {
+        Member member = memberMap.get(pool);
+        if (member != null && member.size > 0) {
+            member.size--;
+            totalSize--;
+            if (member.size < member.minSize) unusedReservedSize++;
+        }
+    }
+
+    /**
+     * close an idle connection from other member pools,called out of pool lock
+     *
+     * @param pool requester pool
+     * @return true,an idle connection closed
+     */
+    boolean reclaimIdle(FastConnectionPool pool) {
+        ArrayList<FastConnectionPool> candidateList;
+        synchronized (this) {
+            if (totalSize + unusedReservedSize < maxSize) return true;//released by others
+            candidateList = new ArrayList<FastConnectionPool>(memberMap.size());
+            for (Member member : memberMap.values()) {
+                if (member.pool != pool && member.size > member.minSize)
+                    candidateList.add(member.pool);
+            }
+        }
+        for (FastConnectionPool candidate : candidateList) {
+            if (candidate.closeIdleForGroup()) return true;
+        }
+        return false;
+    }
+
+    /******************************************************************************************
+     *                                                                                        *
+     *                        Below are monitor methods                                       *
+     *                                                                                        *
+     ******************************************************************************************/
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getTotalSize() {
+        return totalSize;
+    }
+
+    public synchronized int getMemberSize() {
+        return memberMap.size();
+    }
+
+    private static final class Member {
+        private final FastConnectionPool pool;
+        private final int minSize;
+        private int size;
+
+        Member(FastConnectionPool pool, int minSize) {
+            this.pool = pool;
+            this.minSize = minSize;
+        }
+    }
+}
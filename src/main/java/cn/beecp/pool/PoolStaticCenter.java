@@ -36,6 +36,7 @@ public class PoolStaticCenter {
     public static final int CON_IDLE = 1;
     public static final int CON_USING = 2;
     public static final int CON_CLOSED = 3;
+    public static final int CON_RESETTING = 4;
     //Idle Scan thread state
     public static final int THREAD_WORKING = 1;
     public static final int THREAD_WAITING = 2;
@@ -44,6 +45,9 @@ public class PoolStaticCenter {
     //BORROWER STATE
     public static final BorrowerState BOWER_NORMAL = new BorrowerState();
     public static final BorrowerState BOWER_WAITING = new BorrowerState();
+    //BORROWER PRIORITY(ordinal of BorrowPriority)
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
     //Connection reset pos in array
     public static final int PS_AUTO = 0;
     public static final int PS_TRANS = 1;
@@ -52,6 +56,8 @@ public class PoolStaticCenter {
     public static final int PS_SCHEMA = 4;
     public static final int PS_NETWORK = 5;
     public static final SQLTimeoutException RequestTimeoutException = new SQLTimeoutException("Request timeout");
+    public static final SQLTimeoutException RequestDeadlineExceededException = new SQLTimeoutException("Request deadline exceeded");
+    public static final SQLException PoolSaturatedException = new SQLTransientConnectionException("Pool saturated,borrower rejected");
     public static final SQLException RequestInterruptException = new SQLException("Request interrupted");
     public static final SQLException PoolCloseException = new SQLException("Pool has shut down or in clearing");
     public static final XAException XaConnectionClosedException = new XAException("No operations allowed after connection closed");
@@ -149,6 +155,62 @@ public class PoolStaticCenter {
         return a == null ? b == null : a.equals(b);
     }
 
+    private static boolean containsWord(final String text, final String word, int from) {
+        final int l = text.length(), wl = word.length();
+        int i;
+        while ((i = text.indexOf(word, from)) >= 0) {
+            int end = i + wl;
+            if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)) && text.charAt(i - 1) != '_')
+                    && (end == l || !Character.isLetterOrDigit(text.charAt(end)) && text.charAt(end) != '_'))
+                return true;
+            from = end;
+        }
+        return false;
+    }
+
+    /**
+     * check sql by leading keyword whether it only reads data,select with locking clause
+     * or 'into',explain with 'analyze'(statement executed) and multiple statements are
+     * treated as write,unknown sql is treated as write too
+     *
+     * @param sql sql text
+     * @return true,sql only reads data
+     */
+    static final boolean isReadOnlySql(final String sql) {
+        if (sql == null) return false;
+        final int l = sql.length();
+        int i = 0;
+        while (i < l) {//skip blanks and comments
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+            } else if (c == '-' && i + 1 < l && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                if (end < 0) return false;
+                i = end + 1;
+            } else if (c == '/' && i + 1 < l && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) return false;
+                i = end + 2;
+            } else {
+                break;
+            }
+        }
+
+        int end = i;
+        while (end < l && Character.isLetter(sql.charAt(end))) end++;
+        final String keyword = sql.substring(i, end).toUpperCase();
+        final int semicolon = sql.indexOf(';', end);
+        if (semicolon >= 0 && !isBlank(sql.substring(semicolon + 1))) return false;//multiple statements
+
+        if ("SELECT".equals(keyword)) {
+            String upperSql = sql.toUpperCase();
+            return !containsWord(upperSql, "FOR", end) && !containsWord(upperSql, "LOCK", end) && !containsWord(upperSql, "INTO", end);
+        }
+        if ("EXPLAIN".equals(keyword)) return !containsWord(sql.toUpperCase(), "ANALYZE", end);
+        return "SHOW".equals(keyword) || "DESCRIBE".equals(keyword) || "DESC".equals(keyword);
+    }
+
     public static final void setPropertiesValue(Object bean, Map<String, Object> setValueMap) throws Exception {
         if (bean == null) throw new BeeDataSourceConfigException("Bean can't be null");
         setPropertiesValue(bean, getSetMethodMap(bean.getClass()), setValueMap);
@@ -269,7 +331,7 @@ public class PoolStaticCenter {
         }
     }
 
-    static final class ConnectionCreateFailedException extends SQLException {
+    public static final class ConnectionCreateFailedException extends SQLException {
         public ConnectionCreateFailedException(Throwable cause) {
             super(cause);
         }
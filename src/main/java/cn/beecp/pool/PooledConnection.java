@@ -6,6 +6,15 @@
  */
 package cn.beecp.pool;
 
+import cn.beecp.ConnectionLabels;
+import cn.beecp.ExceptionClassifier;
+import cn.beecp.xa.RawXaConnectionFactory;
+
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAResource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -13,6 +22,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import static cn.beecp.pool.PoolStaticCenter.*;
 import static java.lang.System.arraycopy;
 import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 
 /**
  * Pooled Connection
@@ -22,24 +32,58 @@ import static java.lang.System.currentTimeMillis;
  */
 final class PooledConnection implements Cloneable {
     private static final boolean[] FALSE = new boolean[6];
+    //JDBC4.3 request boundary methods,null when running on Java 8 or earlier
+    private static final Method BeginRequestMethod = getConnectionMethod("beginRequest");
+    private static final Method EndRequestMethod = getConnectionMethod("endRequest");
     public final boolean defAutoCommit;
     public final boolean defReadOnly;
     public final String defCatalog;
     public final String defSchema;
     public final int defTransactionIsolation;
     public final int defNetworkTimeout;
+    public final SqlExecuteTracer tracer;
+    final ThreadPoolExecutor networkTimeoutExecutor;
     private final FastConnectionPool pool;
     private final boolean defCatalogSetInd;
     private final boolean defSchemaSetInd;
     private final boolean supportNetworkTimeout;
-    private final ThreadPoolExecutor networkTimeoutExecutor;
+    private final ConnectionResetStrategy resetStrategy;
+    private final boolean skipReadOnlyRollback;
+    //indicator,whether serve session state getters locally and skip setters with current value
+    final boolean mirrorSessionState;
+    //indicator,whether defer 'setAutoCommit' to first statement execution
+    final boolean lazyTransactionBegin;
+    //indicator,whether reset dirty connection by pool worker after returned
+    private final boolean asyncReset;
+    //indicator,whether driver implements 'beginRequest/endRequest' and pool calls them on borrow and return
+    final boolean supportRequestBoundary;
+    //indicator,whether warnings are left to driver cleanup in 'endRequest'
+    private final boolean skipClearWarningsOnRequestEnd;
+    //classifier of fatal errors,null when fatal error eviction disabled
+    private final ExceptionClassifier exceptionClassifier;
     public boolean curAutoCommit;
+    public boolean autoCommitPending;//autoCommit set in lazy transaction begin mode,but not applied to raw connection
+    public boolean curReadOnly;
+    public int curTransactionIsolation;
+    public String curCatalog;
+    public String curSchema;
+    private XAConnection rawXaCon;//created at first XA use,kept in whole lifetime
+    private XAResource rawXaRes;
+    ConnectionLabels labels;//labels of last labeled borrow,properties set by them are not reset on return
     public boolean commitDirtyInd;
+    public boolean readDirtyInd;//only read-only sql executed in manual-commit mode
     public ProxyConnectionBase proxyCon;
 
     public Connection raw;
     public volatile int state;
     public volatile long lastAccessTime;
+    long borrowNanos;//borrowed time(nanoseconds) for adaptive semaphore,zero when not recorded
+    boolean brokenInd;//true,fatal error thrown from raw connection,removed from pool on close
+    boolean requestBegun;//true,'beginRequest' called on raw connection and 'endRequest' not called
+    boolean holdSharedPermit;//true,borrower holds a permit of capacity shared by non high priority borrowers
+    boolean requestDeadlineInd;//true,borrowed in request deadline,statements get query timeout from it
+    volatile boolean retireInd;//true,still in use after refresh wait,removed from pool on return
+    long requestDeadlineNanos;
     public int openStmSize;
     private int resetCnt;// reset count
     private boolean[] resetInd;
@@ -53,7 +97,16 @@ final class PooledConnection implements Cloneable {
                             int defTransactionIsolation,
                             boolean supportNetworkTimeout,
                             int defNetworkTimeout,
-                            ThreadPoolExecutor networkTimeoutExecutor) {
+                            ThreadPoolExecutor networkTimeoutExecutor,
+                            SqlExecuteTracer tracer,
+                            ConnectionResetStrategy resetStrategy,
+                            boolean skipReadOnlyRollback,
+                            boolean mirrorSessionState,
+                            boolean lazyTransactionBegin,
+                            boolean asyncReset,
+                            boolean supportRequestBoundary,
+                            boolean skipClearWarningsOnRequestEnd,
+                            ExceptionClassifier exceptionClassifier) {
         this.pool = pool;
         this.defAutoCommit = defAutoCommit;
         this.defReadOnly = defReadOnly;
@@ -63,9 +116,22 @@ final class PooledConnection implements Cloneable {
         this.defNetworkTimeout = defNetworkTimeout;
         this.supportNetworkTimeout = supportNetworkTimeout;
         this.networkTimeoutExecutor = networkTimeoutExecutor;
+        this.tracer = tracer;
+        this.resetStrategy = resetStrategy;
+        this.skipReadOnlyRollback = skipReadOnlyRollback;
+        this.mirrorSessionState = mirrorSessionState;
+        this.lazyTransactionBegin = lazyTransactionBegin;
+        this.asyncReset = asyncReset;
+        this.supportRequestBoundary = supportRequestBoundary;
+        this.skipClearWarningsOnRequestEnd = skipClearWarningsOnRequestEnd;
+        this.exceptionClassifier = exceptionClassifier;
         this.defCatalogSetInd = !isBlank(defCatalog);
         this.defSchemaSetInd = !isBlank(defSchema);
         this.curAutoCommit = defAutoCommit;
+        this.curReadOnly = defReadOnly;
+        this.curTransactionIsolation = defTransactionIsolation;
+        this.curCatalog = defCatalog;
+        this.curSchema = defSchema;
     }
 
     public final PooledConnection copy(final Connection raw, final int state) throws CloneNotSupportedException, SQLException {
@@ -86,6 +152,42 @@ final class PooledConnection implements Cloneable {
         return p;
     }
 
+    private static Method getConnectionMethod(String name) {
+        try {
+            return Connection.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    //check driver whether overrides default(no-op) 'beginRequest/endRequest' of JDBC4.3
+    static boolean isRequestBoundaryImplemented(final Connection raw) {
+        if (BeginRequestMethod == null || EndRequestMethod == null) return false;
+        try {
+            return raw.getClass().getMethod("beginRequest").getDeclaringClass() != Connection.class
+                    && raw.getClass().getMethod("endRequest").getDeclaringClass() != Connection.class;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private void invokeRequestBoundary(final Method method) throws SQLException {
+        try {
+            method.invoke(raw);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+        } catch (IllegalAccessException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    //called by pool when handed out to borrower
+    final void beginRequest() throws SQLException {
+        invokeRequestBoundary(BeginRequestMethod);
+        requestBegun = true;
+    }
+
     public boolean supportNetworkTimeout() {
         return supportNetworkTimeout;
     }
@@ -95,15 +197,114 @@ final class PooledConnection implements Cloneable {
         lastAccessTime = currentTimeMillis();
     }
 
+    //set deadline of borrower request,statement executions get query timeout from remaining time
+    final void setRequestDeadline(final long deadlineNanos) {
+        requestDeadlineNanos = deadlineNanos;
+        requestDeadlineInd = true;
+    }
+
+    //called by proxies on exception thrown from raw connection or statement
+    final void checkFatalError(final SQLException e) {
+        if (exceptionClassifier == null || brokenInd) return;
+        try {
+            if (!exceptionClassifier.isFatal(e)) return;
+        } catch (Throwable ee) {
+            commonLog.warn("Exception classifier error", ee);
+            return;
+        }
+        brokenInd = true;
+        pool.onFatalError(this, e);
+    }
+
+    //check current session state whether matches labels
+    final boolean matchLabels(final ConnectionLabels labels) {
+        return (labels.getTransactionIsolation() == ConnectionLabels.ISOLATION_NOT_SET || labels.getTransactionIsolation() == curTransactionIsolation)
+                && (labels.getCatalog() == null || labels.getCatalog().equals(curCatalog))
+                && (labels.getSchema() == null || labels.getSchema().equals(curSchema));
+    }
+
+    /**
+     * apply labeled properties to raw connection on borrow,null labels means default values
+     *
+     * @param labels session state labels
+     * @return true,some properties changed on raw connection
+     * @throws SQLException if failed to set properties
+     */
+    final boolean applyLabels(final ConnectionLabels labels) throws SQLException {
+        int isolation = defTransactionIsolation;
+        String catalog = defCatalog, schema = defSchema;
+        if (labels != null) {
+            isolation = labels.getTransactionIsolation() == ConnectionLabels.ISOLATION_NOT_SET ? curTransactionIsolation : labels.getTransactionIsolation();
+            catalog = labels.getCatalog() == null ? curCatalog : labels.getCatalog();
+            schema = labels.getSchema() == null ? curSchema : labels.getSchema();
+        }
+
+        boolean changed = false;
+        if (isolation != curTransactionIsolation) {
+            raw.setTransactionIsolation(isolation);
+            curTransactionIsolation = isolation;
+            changed = true;
+        }
+        if (!PoolStaticCenter.equals(catalog, curCatalog)) {
+            raw.setCatalog(catalog);
+            curCatalog = catalog;
+            changed = true;
+        }
+        if (!PoolStaticCenter.equals(schema, curSchema)) {
+            raw.setSchema(schema);
+            curSchema = schema;
+            changed = true;
+        }
+        this.labels = labels;
+        return changed;
+    }
+
+    //get cached XAConnection of raw connection,create it at first call
+    final XAConnection getRawXaConnection(final RawXaConnectionFactory factory) throws SQLException {
+        if (rawXaCon == null) rawXaCon = factory.create(raw);
+        return rawXaCon;
+    }
+
+    //get cached XAResource of raw XAConnection
+    final XAResource getRawXaResource() throws SQLException {
+        if (rawXaRes == null) rawXaRes = rawXaCon.getXAResource();
+        return rawXaRes;
+    }
+
+    //apply deferred autoCommit to raw connection before execution
+    public final void applyPendingAutoCommit() throws SQLException {
+        raw.setAutoCommit(curAutoCommit);
+        autoCommitPending = false;
+        setResetInd(PS_AUTO, curAutoCommit != defAutoCommit);
+    }
+
+    //called by statement proxy before 'executeQuery' and 'execute' in manual-commit mode,
+    //rollback is only skipped in read-only mode,a misclassified sql can't write data in it
+    public final void setDirtyInd(final String sql) {
+        if (skipReadOnlyRollback && curReadOnly && !commitDirtyInd && isReadOnlySql(sql))
+            readDirtyInd = true;
+        else
+            commitDirtyInd = true;
+    }
+
     //called by pool before remove from pool
     public final void onBeforeRemove() {
         try {
             state = CON_CLOSED;
-            resetRawConn();
+            if (!brokenInd) resetRawConn();
         } catch (Throwable e) {
             commonLog.error("Connection close error", e);
         } finally {
-            oclose(raw);
+            rawXaRes = null;
+            if (rawXaCon != null) {//release driver resources of XA wrapper,physical connection closed with raw
+                try {
+                    rawXaCon.close();
+                } catch (Throwable e) {
+                    commonLog.debug("Warning:Error at closing XA connection:", e);
+                }
+                rawXaCon = null;
+            }
+            pool.closeRawConn(raw);
         }
     }
 
@@ -111,6 +312,23 @@ final class PooledConnection implements Cloneable {
     public final void recycleSelf() throws SQLException {
         try {
             proxyCon = null;
+            if (borrowNanos != 0L) {
+                pool.recordHoldTime(nanoTime() - borrowNanos);
+                borrowNanos = 0L;
+            }
+            if (holdSharedPermit) {
+                holdSharedPermit = false;
+                pool.releaseSharedPermit();
+            }
+            requestDeadlineInd = false;
+            if (brokenInd) {//not reset on a broken raw connection
+                pool.abandonOnReturn(this);
+                return;
+            }
+            if (asyncReset && (commitDirtyInd || readDirtyInd || resetCnt > 0)) {
+                pool.recycleAfterReset(this);
+                return;
+            }
             resetRawConn();
             pool.recycle(this);
         } catch (Throwable e) {
@@ -132,30 +350,37 @@ final class PooledConnection implements Cloneable {
         if (commitDirtyInd) { //Roll back when commit dirty
             raw.rollback();
             commitDirtyInd = false;
+            readDirtyInd = false;
+        } else if (readDirtyInd) {//skip rollback when 'setAutoCommit(true)' ends the transaction in reset
+            if (!defAutoCommit || !resetInd[PS_AUTO]) raw.rollback();
+            readDirtyInd = false;
         }
         //reset begin
+        if (resetCnt > 0 && labels != null) {//properties set by labels are kept for next labeled borrow,others are reset
+            if (labels.getTransactionIsolation() != ConnectionLabels.ISOLATION_NOT_SET) setResetInd(PS_TRANS, false);
+            if (labels.getCatalog() != null) setResetInd(PS_CATALOG, false);
+            if (labels.getSchema() != null) setResetInd(PS_SCHEMA, false);
+        }
         if (resetCnt > 0) {
-            if (resetInd[0]) {//reset autoCommit
-                raw.setAutoCommit(defAutoCommit);
-                curAutoCommit = defAutoCommit;
-            }
-            if (resetInd[1])
-                raw.setTransactionIsolation(defTransactionIsolation);
-            if (resetInd[2]) //reset readonly
-                raw.setReadOnly(defReadOnly);
-            if (resetInd[3]) //reset catalog
-                raw.setCatalog(defCatalog);
-            //for JDK1.7 begin
-            if (resetInd[4]) //reset schema
-                raw.setSchema(defSchema);
-            if (resetInd[5]) //reset networkTimeout
-                raw.setNetworkTimeout(networkTimeoutExecutor, defNetworkTimeout);
-            //for JDK1.7 end
-            resetCnt = 0;
+            resetStrategy.reset(this, resetInd);
+            if (resetInd[PS_AUTO]) curAutoCommit = defAutoCommit;
+            if (resetInd[PS_TRANS]) curTransactionIsolation = defTransactionIsolation;
+            if (resetInd[PS_READONLY]) curReadOnly = defReadOnly;
+            if (resetInd[PS_CATALOG]) curCatalog = defCatalog;
+            if (resetInd[PS_SCHEMA]) curSchema = defSchema;
             arraycopy(FALSE, 0, resetInd, 0, 6);
+            resetCnt = 0;
         }//reset end
-        //clear warnings
-        raw.clearWarnings();
+        if (autoCommitPending) {//not reached raw connection
+            curAutoCommit = defAutoCommit;
+            autoCommitPending = false;
+        }
+        //clear warnings,which are cleared by driver in 'endRequest' when skipped
+        if (!requestBegun || !skipClearWarningsOnRequestEnd) raw.clearWarnings();
+        if (requestBegun) {
+            requestBegun = false;
+            invokeRequestBoundary(EndRequestMethod);
+        }
     }
 
     //****************below are some statement trace methods***************************/
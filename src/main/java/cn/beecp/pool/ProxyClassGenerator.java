@@ -97,7 +97,8 @@ final class ProxyClassGenerator {
             CtClass[] statementCreateParam = new CtClass[]{
                     classPool.get("java.sql.Statement"),
                     classPool.get("cn.beecp.pool.ProxyConnectionBase"),
-                    classPool.get("cn.beecp.pool.PooledConnection")
+                    classPool.get("cn.beecp.pool.PooledConnection"),
+                    classPool.get("java.lang.String")
             };
             ctConstructor = new CtConstructor(statementCreateParam, ctProxyStatementClass);
             ctConstructor.setModifiers(Modifier.PUBLIC);
@@ -115,8 +116,8 @@ final class ProxyClassGenerator {
             CtClass[] statementPsCreateParam = new CtClass[]{
                     classPool.get("java.sql.PreparedStatement"),
                     classPool.get("cn.beecp.pool.ProxyConnectionBase"),
-                    classPool.get("cn.beecp.pool.PooledConnection")
-
+                    classPool.get("cn.beecp.pool.PooledConnection"),
+                    classPool.get("java.lang.String")
             };
             ctConstructor = new CtConstructor(statementPsCreateParam, ctProxyPsStatementClass);
             ctConstructor.setModifiers(Modifier.PUBLIC);
@@ -134,7 +135,8 @@ final class ProxyClassGenerator {
             CtClass[] statementCsCreateParam = new CtClass[]{
                     classPool.get("java.sql.CallableStatement"),
                     classPool.get("cn.beecp.pool.ProxyConnectionBase"),
-                    classPool.get("cn.beecp.pool.PooledConnection")};
+                    classPool.get("cn.beecp.pool.PooledConnection"),
+                    classPool.get("java.lang.String")};
             ctConstructor = new CtConstructor(statementCsCreateParam, ctProxyCsStatementClass);
             ctConstructor.setModifiers(Modifier.PUBLIC);
             ctConstructor.setBody("{super($$);}");
@@ -258,15 +260,16 @@ final class ProxyClassGenerator {
 
             methodBuffer.delete(0, methodBuffer.length());
             methodBuffer.append("{");
+            if (!methodName.equals("close")) methodBuffer.append("try{");
             if (ctMethod.getReturnType() == ctStatementClass) {
                 newCtMethodm.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
-                methodBuffer.append("return new ProxyStatement(raw." + methodName + "($$),this,p);");
+                methodBuffer.append("return new ProxyStatement(raw." + methodName + "($$),this,p,null);");
             } else if (ctMethod.getReturnType() == ctPreparedStatementClass) {
                 newCtMethodm.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
-                methodBuffer.append("return new ProxyPsStatement(raw." + methodName + "($$),this,p);");
+                methodBuffer.append("return new ProxyPsStatement(raw." + methodName + "($$),this,p,$1);");
             } else if (ctMethod.getReturnType() == ctCallableStatementClass) {
                 newCtMethodm.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
-                methodBuffer.append("return new ProxyCsStatement(raw." + methodName + "($$),this,p);");
+                methodBuffer.append("return new ProxyCsStatement(raw." + methodName + "($$),this,p,$1);");
             } else if (ctMethod.getReturnType() == ctDatabaseMetaDataIntf) {
                 methodBuffer.append("return new ProxyDatabaseMetaData(raw." + methodName + "($$),p);");
             } else if (methodName.equals("close")) {
@@ -276,6 +279,8 @@ final class ProxyClassGenerator {
             } else {
                 methodBuffer.append("return raw." + methodName + "($$);");
             }
+            if (!methodName.equals("close"))
+                methodBuffer.append("}catch(SQLException e){checkFatalError(e);throw e;}");
 
             methodBuffer.append("}");
             newCtMethodm.setBody(methodBuffer.toString());
@@ -302,42 +307,50 @@ final class ProxyClassGenerator {
         StringBuilder methodBuffer = new StringBuilder(50);
 
         String rawName = "raw.";
+        boolean isPreparedStatement = false;
+        boolean isCallableStatement = false;
         if ("java.sql.PreparedStatement".equals(ctStatementClass.getName())) {
             rawName = "((PreparedStatement)raw).";
+            isPreparedStatement = true;
         } else if ("java.sql.CallableStatement".equals(ctStatementClass.getName())) {
             rawName = "((CallableStatement)raw).";
+            isCallableStatement = true;
         }
 
+        CtClass ctStringClass = classPool.get(String.class.getName());
         for (CtMethod ctMethod : linkedList) {
             String methodName = ctMethod.getName();
             CtMethod newCtMethodm = CtNewMethod.copy(ctMethod, statementProxyClass, null);
             newCtMethodm.setModifiers(methodName.startsWith("execute") ? Modifier.PUBLIC | Modifier.FINAL : Modifier.PUBLIC);
 
             methodBuffer.delete(0, methodBuffer.length());
-            methodBuffer.append("{");
-
-            if (ctMethod.getReturnType() == CtClass.voidType) {
-                if (methodName.startsWith("execute")) methodBuffer.append("p.commitDirtyInd=!p.curAutoCommit;");
+            methodBuffer.append("{try{");
+
+            if (methodName.startsWith("execute")) {
+                CtClass[] paramTypes = ctMethod.getParameterTypes();
+                String sqlName = (paramTypes.length > 0 && paramTypes[0] == ctStringClass) ? "$1" : "sql";
+                //procedure call,update and batch are writes,others are checked by sql
+                boolean maybeRead = !isCallableStatement && ("executeQuery".equals(methodName) || "execute".equals(methodName));
+                appendExecuteMethodBody(methodBuffer, rawName + methodName + "($$)", ctMethod.getReturnType(), sqlName, maybeRead, ctResultSetClass);
+            } else if (ctMethod.getReturnType() == CtClass.voidType) {
                 methodBuffer.append(rawName + methodName + "($$);");
-                if (methodName.startsWith("execute"))
-                    methodBuffer.append("p.lastAccessTime=System.currentTimeMillis();");
-            } else {
-                if (methodName.startsWith("execute")) {
-                    methodBuffer.append("p.commitDirtyInd=!p.curAutoCommit;");
-                    methodBuffer.append(ctMethod.getReturnType().getName() + " r=" + rawName + methodName + "($$);");
-                    methodBuffer.append("p.lastAccessTime=System.currentTimeMillis();");
-                    if (ctMethod.getReturnType() == ctResultSetClass) {
-                        methodBuffer.append("return new ProxyResultSet(r,this,p);");
-                    } else {
-                        methodBuffer.append("return r;");
+                if (isPreparedStatement || isCallableStatement) {//capture bind parameters for slow sql log
+                    CtClass[] paramTypes = ctMethod.getParameterTypes();
+                    String value = "setNull".equals(methodName) ? "null" : "($w)$2";
+                    if ("clearParameters".equals(methodName)) {
+                        methodBuffer.append("if(captureParameters)clearCapturedParameters();");
+                    } else if (methodName.startsWith("set") && paramTypes.length >= 2 && paramTypes[0] == CtClass.intType) {
+                        methodBuffer.append("if(captureParameters)captureParameter($1," + value + ");");
+                    } else if (isCallableStatement && methodName.startsWith("set") && paramTypes.length >= 2 && paramTypes[0] == ctStringClass) {
+                        methodBuffer.append("if(captureParameters)captureNamedParameter($1," + value + ");");//named parameter
                     }
-                } else {
-                    if (ctMethod.getReturnType() == ctResultSetClass) {
-                        methodBuffer.append("return new ProxyResultSet(raw." + methodName + "($$),this,p);");
-                    } else
-                        methodBuffer.append("return " + rawName + methodName + "($$);");
                 }
+            } else if (ctMethod.getReturnType() == ctResultSetClass) {
+                methodBuffer.append("return new ProxyResultSet(raw." + methodName + "($$),this,p);");
+            } else {
+                methodBuffer.append("return " + rawName + methodName + "($$);");
             }
+            methodBuffer.append("}catch(SQLException e){checkFatalError(e);throw e;}");
             methodBuffer.append("}");
             newCtMethodm.setBody(methodBuffer.toString());
             statementProxyClass.addMethod(newCtMethodm);
@@ -345,6 +358,65 @@ final class ProxyClassGenerator {
         return statementProxyClass.toClass();
     }
 
+    /**
+     * append body of statement 'execute*' method,trace calls are in a branch which only be run when tracer configured
+     *
+     * @param methodBuffer     method body buffer
+     * @param rawCall          call expression on raw statement
+     * @param returnType       return type of method
+     * @param sqlName          sql expression passed to tracer
+     * @param maybeRead        true,execution may only read data(checked by sql)
+     * @param ctResultSetClass resultSet interface in javassist class pool
+     */
+    private void appendExecuteMethodBody(StringBuilder methodBuffer, String rawCall, CtClass returnType, String sqlName, boolean maybeRead, CtClass ctResultSetClass) {
+        boolean isVoid = returnType == CtClass.voidType;
+        boolean isResultSet = returnType == ctResultSetClass;
+        String typeName = returnType.getName();
+
+        methodBuffer.append("if(p.autoCommitPending)applyPendingAutoCommit();");
+        methodBuffer.append("if(p.requestDeadlineInd)applyRequestDeadline();");
+        if (maybeRead)
+            methodBuffer.append("if(!p.curAutoCommit)p.setDirtyInd(" + sqlName + ");");
+        else
+            methodBuffer.append("p.commitDirtyInd=!p.curAutoCommit;");
+        //1:no tracer
+        methodBuffer.append("if(tracer==null){");
+        if (isVoid) {
+            methodBuffer.append(rawCall + ";");
+            methodBuffer.append("p.lastAccessTime=System.currentTimeMillis();");
+            methodBuffer.append("return;");
+        } else {
+            methodBuffer.append(typeName + " r=" + rawCall + ";");
+            methodBuffer.append("p.lastAccessTime=System.currentTimeMillis();");
+            methodBuffer.append(isResultSet ? "return new ProxyResultSet(r,this,p);" : "return r;");
+        }
+        methodBuffer.append("}");
+
+        //2:trace execution
+        methodBuffer.append("long b=System.nanoTime();");
+        methodBuffer.append("try{");
+        if (isVoid) {
+            methodBuffer.append(rawCall + ";");
+            methodBuffer.append("p.lastAccessTime=System.currentTimeMillis();");
+            methodBuffer.append("tracer.afterExecute(this," + sqlName + ",b,null,null);");
+        } else {
+            methodBuffer.append(typeName + " r2=" + rawCall + ";");
+            methodBuffer.append("p.lastAccessTime=System.currentTimeMillis();");
+            if (isResultSet) {
+                methodBuffer.append("ResultSet r3=new ProxyResultSet(r2,this,p);");
+                methodBuffer.append("tracer.afterExecute(this," + sqlName + ",b,r3,null);");
+                methodBuffer.append("return r3;");
+            } else {
+                methodBuffer.append("tracer.afterExecute(this," + sqlName + ",b,($w)r2,null);");
+                methodBuffer.append("return r2;");
+            }
+        }
+        methodBuffer.append("}catch(SQLException e){");
+        methodBuffer.append("tracer.afterExecute(this," + sqlName + ",b,null,e);");
+        methodBuffer.append("throw e;");
+        methodBuffer.append("}");
+    }
+
     //ctProxyDatabaseMetaDataClass,ctDatabaseMetaDataIntf,ctDatabaseMetaDataSuperClass
     private Class createProxyDatabaseMetaDataClass(ClassPool classPool, CtClass ctProxyDatabaseMetaDataClass, CtClass ctDatabaseMetaDataIntf, CtClass ctDatabaseMetaDataSuperClass) throws Exception {
         CtMethod[] ctSuperClassMethods = ctDatabaseMetaDataSuperClass.getMethods();
@@ -6,8 +6,13 @@
  */
 package cn.beecp.pool;
 
+import cn.beecp.xa.RawXaConnectionFactory;
+
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAResource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.concurrent.Executor;
 
 import static cn.beecp.pool.PoolStaticCenter.*;
@@ -36,6 +41,11 @@ public abstract class ProxyConnectionBase implements Connection {
      *                                                                                         *
      ********************************************************************************************/
 
+    //called by proxy methods on exception thrown from raw connection
+    protected final void checkFatalError(final SQLException e) {
+        if (!isClosed) p.checkFatalError(e);
+    }
+
     public final boolean getClosedInd() {
         return isClosed;
     }
@@ -46,9 +56,28 @@ public abstract class ProxyConnectionBase implements Connection {
 
     public Connection getRaw() throws SQLException {
         checkClosed();
+        if (p.autoCommitPending) p.applyPendingAutoCommit();
         return raw;
     }
 
+    /**
+     * get XAConnection of raw connection,which is created at first call and kept in lifetime of pooled connection
+     *
+     * @param factory XAConnection factory
+     * @return raw XAConnection
+     * @throws SQLException if closed or failed to create
+     */
+    public final XAConnection getRawXaConnection(RawXaConnectionFactory factory) throws SQLException {
+        checkClosed();
+        return p.getRawXaConnection(factory);
+    }
+
+    //get XAResource of raw XAConnection,called after 'getRawXaConnection'
+    public final XAResource getRawXaResource() throws SQLException {
+        checkClosed();
+        return p.getRawXaResource();
+    }
+
     synchronized final void registerStatement(final ProxyStatementBase s) {
         p.registerStatement(s);
     }
@@ -79,30 +108,72 @@ public abstract class ProxyConnectionBase implements Connection {
     }
 
     public final void setAutoCommit(final boolean autoCommit) throws SQLException {
+        if (p.mirrorSessionState && autoCommit == p.curAutoCommit) {
+            checkClosed();
+            return;
+        }
         if (p.commitDirtyInd) throw AutoCommitChangeForbiddenException;
+        if (p.lazyTransactionBegin) {//applied before first statement execution
+            checkClosed();
+            if (autoCommit != p.curAutoCommit) {
+                p.curAutoCommit = autoCommit;
+                p.autoCommitPending = !p.autoCommitPending;
+            }
+            return;
+        }
         raw.setAutoCommit(autoCommit);
         p.curAutoCommit = autoCommit;
         p.setResetInd(PS_AUTO, autoCommit != p.defAutoCommit);
     }
 
+    public boolean getAutoCommit() throws SQLException {
+        if (!p.mirrorSessionState && !p.autoCommitPending) return raw.getAutoCommit();
+        checkClosed();
+        return p.curAutoCommit;
+    }
+
     public void setTransactionIsolation(int level) throws SQLException {
+        if (p.mirrorSessionState && level == p.curTransactionIsolation) {
+            checkClosed();
+            return;
+        }
         raw.setTransactionIsolation(level);
+        p.curTransactionIsolation = level;
         p.setResetInd(PS_TRANS, level != p.defTransactionIsolation);
     }
 
+    public int getTransactionIsolation() throws SQLException {
+        if (!p.mirrorSessionState) return raw.getTransactionIsolation();
+        checkClosed();
+        return p.curTransactionIsolation;
+    }
+
     public void setReadOnly(boolean readOnly) throws SQLException {
+        if (p.mirrorSessionState && readOnly == p.curReadOnly) {
+            checkClosed();
+            return;
+        }
         raw.setReadOnly(readOnly);
+        p.curReadOnly = readOnly;
         p.setResetInd(PS_READONLY, readOnly != p.defReadOnly);
     }
 
+    public boolean isReadOnly() throws SQLException {
+        if (!p.mirrorSessionState) return raw.isReadOnly();
+        checkClosed();
+        return p.curReadOnly;
+    }
+
     public void setCatalog(String catalog) throws SQLException {
         raw.setCatalog(catalog);
+        p.curCatalog = catalog;
         p.setResetInd(PS_CATALOG, !PoolStaticCenter.equals(catalog, p.defCatalog));
     }
 
     //for JDK1.7 begin
     public void setSchema(String schema) throws SQLException {
         raw.setSchema(schema);
+        p.curSchema = schema;
         p.setResetInd(PS_SCHEMA, !PoolStaticCenter.equals(schema, p.defSchema));
     }
 
@@ -122,15 +193,51 @@ public abstract class ProxyConnectionBase implements Connection {
     //for JDK1.7 end
 
     public void commit() throws SQLException {
-        raw.commit();
+        if (p.autoCommitPending && !p.curAutoCommit) {//transaction not began on raw connection
+            checkClosed();
+            return;
+        }
+        try {
+            raw.commit();
+        } catch (SQLException e) {
+            checkFatalError(e);
+            throw e;
+        }
         p.lastAccessTime = currentTimeMillis();
         p.commitDirtyInd = false;
+        p.readDirtyInd = false;
     }
 
     public void rollback() throws SQLException {
-        raw.rollback();
+        if (p.autoCommitPending && !p.curAutoCommit) {//transaction not began on raw connection
+            checkClosed();
+            return;
+        }
+        try {
+            raw.rollback();
+        } catch (SQLException e) {
+            checkFatalError(e);
+            throw e;
+        }
         p.lastAccessTime = currentTimeMillis();
         p.commitDirtyInd = false;
+        p.readDirtyInd = false;
+    }
+
+    public Savepoint setSavepoint() throws SQLException {
+        if (p.autoCommitPending) {
+            checkClosed();
+            p.applyPendingAutoCommit();
+        }
+        return raw.setSavepoint();
+    }
+
+    public Savepoint setSavepoint(String name) throws SQLException {
+        if (p.autoCommitPending) {
+            checkClosed();
+            p.applyPendingAutoCommit();
+        }
+        return raw.setSavepoint(name);
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
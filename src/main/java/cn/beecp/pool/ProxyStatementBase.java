@@ -10,7 +10,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static cn.beecp.pool.PoolStaticCenter.*;
 
@@ -22,6 +26,9 @@ import static cn.beecp.pool.PoolStaticCenter.*;
  */
 abstract class ProxyStatementBase implements Statement {
     protected final PooledConnection p;//called by subclass to update time
+    protected final SqlExecuteTracer tracer;//null when not configured in pool
+    protected final String sql;//sql of prepared statement,null on plain statement
+    protected final boolean captureParameters;//called by prepared statement setters for slow sql log
     private final ProxyConnectionBase owner;
     protected Statement raw;
     boolean registered = true;
@@ -29,12 +36,20 @@ abstract class ProxyStatementBase implements Statement {
     private ProxyResultSetBase curRe;
     private ArrayList<ProxyResultSetBase> results;
     private int resultOpenCode = CLOSE_CURRENT_RESULT;
+    private Object[] parameters;
+    private int parameterSize;
+    private LinkedHashMap<String, Object> namedParameters;//parameters set by name on callable statement
+    private boolean queryTimeoutSet;//true,query timeout set by user
+    private int deadlineQueryTimeout;//seconds:query timeout set from request deadline
 
-    public ProxyStatementBase(final Statement raw, final ProxyConnectionBase o, final PooledConnection p) {
+    public ProxyStatementBase(final Statement raw, final ProxyConnectionBase o, final PooledConnection p, final String sql) {
         o.registerStatement(this);
         this.raw = raw;
         this.owner = o;
         this.p = p;
+        this.sql = sql;
+        this.tracer = p.tracer;
+        this.captureParameters = tracer != null && tracer.captureParameters;
     }
 
     /*******************************************************************************************
@@ -43,6 +58,69 @@ abstract class ProxyStatementBase implements Statement {
      *                                                                                         *
      *******************************************************************************************/
 
+    //call by execution methods when autoCommit is pending in lazy transaction begin mode
+    protected final void applyPendingAutoCommit() throws SQLException {
+        if (isClosed) throw StatementClosedException;
+        p.applyPendingAutoCommit();
+    }
+
+    //call by execute methods when connection borrowed in request deadline,explicit query timeout is kept
+    protected final void applyRequestDeadline() throws SQLException {
+        if (isClosed) throw StatementClosedException;
+        if (queryTimeoutSet) return;
+        final long remainNanos = p.requestDeadlineNanos - System.nanoTime();
+        if (remainNanos <= 0L) throw RequestDeadlineExceededException;
+        final int seconds = (int) Math.min(Integer.MAX_VALUE, (remainNanos + 999999999L) / 1000000000L);
+        if (seconds != deadlineQueryTimeout) {
+            raw.setQueryTimeout(seconds);
+            deadlineQueryTimeout = seconds;
+        }
+    }
+
+    //called by proxy methods on exception thrown from raw statement
+    protected final void checkFatalError(final SQLException e) {
+        if (!isClosed) p.checkFatalError(e);
+    }
+
+    //call by setter methods of ProxyPsStatement,index is 1-based
+    protected final void captureParameter(final int index, final Object value) {
+        if (index < 1) return;
+        if (parameters == null) {
+            parameters = new Object[Math.max(index, 8)];
+        } else if (index > parameters.length) {
+            parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length << 1));
+        }
+        parameters[index - 1] = value;
+        if (index > parameterSize) parameterSize = index;
+    }
+
+    //call by named setter methods of ProxyCsStatement
+    protected final void captureNamedParameter(final String name, final Object value) {
+        if (name == null) return;
+        if (namedParameters == null) namedParameters = new LinkedHashMap<String, Object>(8);
+        namedParameters.put(name, value);
+    }
+
+    //call by ProxyPsStatement.clearParameters
+    protected final void clearCapturedParameters() {
+        if (parameters != null) Arrays.fill(parameters, 0, parameterSize, null);
+        parameterSize = 0;
+        if (namedParameters != null) namedParameters.clear();
+    }
+
+    //call by SqlExecuteTracer,copy for statement reuse after execution,named parameters follow indexed ones as entries
+    final Object[] copyCapturedParameters() {
+        final int namedSize = namedParameters == null ? 0 : namedParameters.size();
+        if (namedSize == 0) return parameters == null ? null : Arrays.copyOf(parameters, parameterSize);
+
+        Object[] copy = new Object[parameterSize + namedSize];
+        if (parameterSize > 0) System.arraycopy(parameters, 0, copy, 0, parameterSize);
+        int i = parameterSize;
+        for (Map.Entry<String, Object> entry : namedParameters.entrySet())
+            copy[i++] = new SimpleImmutableEntry<String, Object>(entry);
+        return copy;
+    }
+
     final void removeOpenResultSet(final ProxyResultSetBase r) {//call by ProxyResultSetBase.constructor
         if (r == curRe) {
             curRe = null;
@@ -138,6 +216,12 @@ abstract class ProxyStatementBase implements Statement {
     public void setPoolable(boolean var1) throws SQLException {
     }
 
+    public void setQueryTimeout(int seconds) throws SQLException {
+        if (isClosed) throw StatementClosedException;
+        raw.setQueryTimeout(seconds);
+        queryTimeoutSet = true;
+    }
+
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
         return iface.isInstance(this);
     }
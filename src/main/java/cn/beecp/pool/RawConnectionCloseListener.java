@@ -0,0 +1,19 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.sql.Connection;
+
+/**
+ * Connection factory implements it to be notified after pool closes a created connection
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+interface RawConnectionCloseListener {
+    void onClosed(Connection con);
+}
@@ -7,16 +7,29 @@
 package cn.beecp.pool;
 
 import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BorrowPriority;
+import cn.beecp.ConnectionLabels;
+import cn.beecp.RequestDeadline;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static cn.beecp.pool.PoolStaticCenter.*;
+import static java.lang.System.nanoTime;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
@@ -24,15 +37,21 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
  * JDBC Connection Pool Implementation,which
  * <p>
  * return raw connections to borrowers directly.
+ * <p>
+ * Count of open connections is limited by an adaptive limit(max is 'borrowSemaphoreSize'),
+ * which is adjusted on connect latency,a permit is released when its connection closed.
  *
  * @author Chris.Liao
  * @version 1.0
  */
 public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJmxBean {
+    private static final Class<?>[] ConnectionInterfaces = new Class<?>[]{Connection.class};
     private static AtomicInteger poolNameIndex = new AtomicInteger(1);
     private final ConnectionPoolMonitorVo monitorVo = new ConnectionPoolMonitorVo();
+    private final AtomicLong createdCount = new AtomicLong(0);
+    private final AtomicLong closedCount = new AtomicLong(0);
     private long defaultMaxWait;
-    private Semaphore borrowSemaphore;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
     private BeeDataSourceConfig poolConfig;
     private AtomicInteger poolState = new AtomicInteger(POOL_UNINIT);
     private String poolName = "";
@@ -46,7 +65,7 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
     public void init(BeeDataSourceConfig config) {
         poolConfig = config;
         defaultMaxWait = MILLISECONDS.toNanos(poolConfig.getMaxWait());
-        borrowSemaphore = new Semaphore(poolConfig.getBorrowSemaphoreSize(), poolConfig.isFairMode());
+        concurrencyLimiter = new AdaptiveConcurrencyLimiter(1, poolConfig.getBorrowSemaphoreSize(), poolConfig.isFairMode());
         poolName = !isBlank(config.getPoolName()) ? config.getPoolName() : "RawPool-" + poolNameIndex.getAndIncrement();
 
         if (poolConfig.isFairMode()) {
@@ -76,19 +95,73 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
      * @throws SQLException if pool is closed or waiting timeout,then throw exception
      */
     public Connection getConnection() throws SQLException {
-        try {
-            if (poolState.get() != POOL_NORMAL) throw PoolCloseException;
+        return getConnection(defaultMaxWait, NANOSECONDS);
+    }
 
-            if (borrowSemaphore.tryAcquire(defaultMaxWait, NANOSECONDS)) {
-                return poolConfig.getConnectionFactory().create();
-            } else {
-                throw RequestTimeoutException;
-            }
+    /**
+     * borrow one connection in timeout,which is limited by request deadline of current thread
+     *
+     * @param timeout max wait time
+     * @param unit    time unit of timeout
+     * @return a new connection
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public Connection getConnection(long timeout, TimeUnit unit) throws SQLException {
+        if (poolState.get() != POOL_NORMAL) throw PoolCloseException;
+        long waitNs = Math.min(unit.toNanos(timeout), RequestDeadline.getRemainingNanos());
+        if (waitNs <= 0L) throw RequestTimeoutException;
+        try {
+            if (!concurrencyLimiter.tryAcquire(waitNs)) throw RequestTimeoutException;
         } catch (InterruptedException e) {
             throw RequestInterruptException;
+        }
+
+        Connection rawCon = null;
+        final long beginTime = nanoTime();
+        try {
+            rawCon = poolConfig.getConnectionFactory().create();
+            if (rawCon == null) throw new SQLException("Connection factory returned null");
         } finally {
-            borrowSemaphore.release();
+            concurrencyLimiter.onSample(nanoTime() - beginTime, rawCon != null);
+            if (rawCon == null) concurrencyLimiter.release();
+        }
+        createdCount.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(RawConnectionPool.class.getClassLoader(),
+                ConnectionInterfaces, new PermitConnectionHandler(rawCon));
+    }
+
+    /**
+     * borrow one connection and apply labels to it
+     *
+     * @param labels session state labels
+     * @return a new connection
+     * @throws SQLException if pool is closed or waiting timeout,then throw exception
+     */
+    public Connection getConnection(ConnectionLabels labels) throws SQLException {
+        Connection con = getConnection();
+        if (labels != null) {
+            try {
+                if (labels.getTransactionIsolation() != ConnectionLabels.ISOLATION_NOT_SET)
+                    con.setTransactionIsolation(labels.getTransactionIsolation());
+                if (labels.getCatalog() != null)
+                    con.setCatalog(labels.getCatalog());
+                if (labels.getSchema() != null)
+                    con.setSchema(labels.getSchema());
+            } catch (SQLException e) {
+                oclose(con);
+                throw e;
+            }
         }
+        return con;
+    }
+
+    //no waiter queue in raw pool,so priority is ignored
+    public Connection getConnection(BorrowPriority priority) throws SQLException {
+        return getConnection();
+    }
+
+    //not support in raw pool
+    public void setThreadBorrowPriority(BorrowPriority priority) {
     }
 
     /**
@@ -130,8 +203,19 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
     public void clearAllConnections(boolean force) {
     }
 
+    //no pooled connections in raw pool
+    public Future<Integer> refreshAllConnections() {
+        FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+            public Integer call() {
+                return 0;
+            }
+        });
+        task.run();
+        return task;
+    }
+
     public int getConnTotalSize() {
-        return 0;
+        return concurrencyLimiter.getInFlight();
     }
 
     public int getConnIdleSize() {
@@ -139,15 +223,19 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
     }
 
     public int getConnUsingSize() {
-        return 0;
+        return concurrencyLimiter.getInFlight();
+    }
+
+    public int getBorrowSemaphoreSize() {
+        return concurrencyLimiter.getLimit();
     }
 
     public int getSemaphoreAcquiredSize() {
-        return poolConfig.getBorrowSemaphoreSize() - borrowSemaphore.availablePermits();
+        return concurrencyLimiter.getInFlight();
     }
 
     public int getSemaphoreWaitingSize() {
-        return borrowSemaphore.getQueueLength();
+        return concurrencyLimiter.getWaiting();
     }
 
     public int getTransferWaitingSize() {
@@ -158,6 +246,51 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
     public void setEnableRuntimeLog(boolean enabledDebug) {
     }
 
+    public String[] getSqlStatisticTopByTotalTime() {
+        return new String[0];
+    }
+
+    public String[] getSqlStatisticTopByCount() {
+        return new String[0];
+    }
+
+    public String[] getSqlStatisticTopByMaxTime() {
+        return new String[0];
+    }
+
+    public void clearSqlStatistic() {
+    }
+
+    public long getLabelBorrowCount() {
+        return 0;
+    }
+
+    public long getLabelHitCount() {
+        return 0;
+    }
+
+    public double getLabelHitRate() {
+        return 0;
+    }
+
+    public boolean isSaturated() {
+        return false;
+    }
+
+    public boolean isCircuitBreakerOpen() {
+        return false;
+    }
+
+    //not support in raw pool
+    public void setMaxActive(int maxActive) {
+        throw new UnsupportedOperationException("Not support to change max size of raw pool");
+    }
+
+    //not support in raw pool
+    public void setBorrowSemaphoreSize(int borrowSemaphoreSize) {
+        throw new UnsupportedOperationException("Not support to change semaphore size of raw pool");
+    }
+
     public ConnectionPoolMonitorVo getMonitorVo() {
         int totSize = getConnTotalSize();
         int idleSize = getConnIdleSize();
@@ -169,6 +302,10 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
         monitorVo.setUsingSize(totSize - idleSize);
         monitorVo.setSemaphoreWaiterSize(getSemaphoreWaitingSize());
         monitorVo.setTransferWaiterSize(getTransferWaitingSize());
+        monitorVo.setInFlightSize(concurrencyLimiter.getInFlight());
+        monitorVo.setConcurrencyLimit(concurrencyLimiter.getLimit());
+        monitorVo.setCreatedCount(createdCount.get());
+        monitorVo.setClosedCount(closedCount.get());
         return monitorVo;
     }
 
@@ -226,4 +363,36 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJm
         }
     }
     //******************************** JMX **************************************//
+
+    //connection handler,release permit when raw connection closed
+    private final class PermitConnectionHandler implements InvocationHandler {
+        private final Connection raw;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        PermitConnectionHandler(Connection raw) {
+            this.raw = raw;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("toString".equals(name)) {
+                return raw.toString();
+            }
+
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            } finally {
+                if (("close".equals(name) || "abort".equals(name)) && released.compareAndSet(false, true)) {
+                    closedCount.incrementAndGet();
+                    concurrencyLimiter.release();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Slow sql log appender,records are put into a bounded queue by statement threads
+ * and written by a daemon thread,records are dropped when queue is full,so it never
+ * blocks execution threads.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class SlowSqlLogAppender extends Thread {
+    private static final Logger slowSqlLog = LoggerFactory.getLogger("cn.beecp.SlowSqlLog");
+    private static final int MAX_PARAMETER_LENGTH = 100;
+    private final String poolName;
+    private final ArrayBlockingQueue<SlowSqlLogRecord> logQueue;
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private volatile boolean closed;
+
+    SlowSqlLogAppender(String poolName, int queueSize) {
+        this.poolName = poolName;
+        this.logQueue = new ArrayBlockingQueue<SlowSqlLogRecord>(queueSize);
+        this.setDaemon(true);
+        this.setName(poolName + "-slowSqlLog");
+    }
+
+    private static String formatParameter(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof byte[]) {
+            return "byte[" + ((byte[]) value).length + "]";
+        } else if (value instanceof InputStream || value instanceof Reader) {
+            return value.getClass().getSimpleName();
+        } else if (value instanceof Map.Entry) {//named parameter
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+            return entry.getKey() + "=" + formatParameter(entry.getValue());
+        } else {
+            String text = value.toString();
+            return text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+        }
+    }
+
+    private static String formatParameters(Object[] parameters) {
+        if (parameters == null) return "[]";
+        StringBuilder buf = new StringBuilder(parameters.length * 8).append('[');
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) buf.append(',');
+            buf.append(formatParameter(parameters[i]));
+        }
+        return buf.append(']').toString();
+    }
+
+    //called by statement threads,drop the record when queue is full
+    final void append(String sql, Object[] parameters, long elapsedNanos, Throwable cause) {
+        if (closed || !logQueue.offer(new SlowSqlLogRecord(sql, parameters, elapsedNanos, cause)))
+            droppedCount.incrementAndGet();
+    }
+
+    //records in queue are written before thread exits
+    final void close() {
+        closed = true;
+        this.interrupt();
+    }
+
+    public void run() {
+        while (!closed) {
+            try {
+                write(logQueue.take());
+            } catch (InterruptedException e) {
+                //closed
+            } catch (Throwable e) {
+                slowSqlLog.warn("BeeCP({})failed to write slow sql log", poolName, e);
+            }
+        }
+
+        SlowSqlLogRecord record;//drain records appended before close
+        while ((record = logQueue.poll()) != null) {
+            try {
+                write(record);
+            } catch (Throwable e) {
+                slowSqlLog.warn("BeeCP({})failed to write slow sql log", poolName, e);
+            }
+        }
+    }
+
+    private void write(SlowSqlLogRecord record) {
+        long dropped = droppedCount.getAndSet(0);
+        if (dropped > 0)
+            slowSqlLog.warn("BeeCP({})dropped {} slow sql records for full log queue", poolName, dropped);
+
+        if (record.cause == null) {
+            slowSqlLog.warn("BeeCP({})slow sql({}ms):{},parameters:{}", poolName,
+                    NANOSECONDS.toMillis(record.elapsedNanos), record.sql, formatParameters(record.parameters));
+        } else {
+            slowSqlLog.warn("BeeCP({})slow sql({}ms):{},parameters:{},failed:{}", poolName,
+                    NANOSECONDS.toMillis(record.elapsedNanos), record.sql, formatParameters(record.parameters), record.cause.toString());
+        }
+    }
+
+    private static final class SlowSqlLogRecord {
+        private final String sql;
+        private final Object[] parameters;
+        private final long elapsedNanos;
+        private final Throwable cause;
+
+        SlowSqlLogRecord(String sql, Object[] parameters, long elapsedNanos, Throwable cause) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedNanos = elapsedNanos;
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.SqlExecuteInterceptor;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static cn.beecp.pool.PoolStaticCenter.commonLog;
+import static java.lang.System.nanoTime;
+
+/**
+ * Sql execution tracer,created by pool only when some trace is configured,
+ * statement proxies skip trace calls when it is null.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class SqlExecuteTracer {
+    private final String poolName;
+    private final SqlExecuteInterceptor interceptor;
+    private final SqlStatisticCollector statisticCollector;
+    private final SlowSqlLogAppender slowSqlLogAppender;
+    private final long slowSqlThresholdNanos;
+    private final double slowSqlLogSampleRate;
+    //indicator,whether prepared statement proxies capture bind parameters
+    final boolean captureParameters;
+
+    SqlExecuteTracer(String poolName, SqlExecuteInterceptor interceptor, SqlStatisticCollector statisticCollector,
+                     SlowSqlLogAppender slowSqlLogAppender, long slowSqlThresholdNanos, double slowSqlLogSampleRate, boolean captureParameters) {
+        this.poolName = poolName;
+        this.interceptor = interceptor;
+        this.statisticCollector = statisticCollector;
+        this.slowSqlLogAppender = slowSqlLogAppender;
+        this.slowSqlThresholdNanos = slowSqlThresholdNanos;
+        this.slowSqlLogSampleRate = slowSqlLogSampleRate;
+        this.captureParameters = slowSqlLogAppender != null && captureParameters;
+    }
+
+    //called by statement proxy after execution
+    final void afterExecute(final ProxyStatementBase s, final String sql, final long beginNanos, final Object result, final Throwable cause) {
+        final long elapsedNanos = nanoTime() - beginNanos;
+        if (statisticCollector != null) statisticCollector.add(sql, elapsedNanos, result, cause);
+        if (slowSqlLogAppender != null && elapsedNanos >= slowSqlThresholdNanos
+                && (slowSqlLogSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < slowSqlLogSampleRate))
+            slowSqlLogAppender.append(sql, s.copyCapturedParameters(), elapsedNanos, cause);
+        if (interceptor != null) {
+            try {
+                interceptor.afterExecute(poolName, sql, elapsedNanos, result, cause);
+            } catch (Throwable e) {
+                commonLog.warn("BeeCP({})sql execute interceptor error", poolName, e);
+            }
+        }
+    }
+}
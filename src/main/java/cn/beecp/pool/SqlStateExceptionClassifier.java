@@ -0,0 +1,85 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.ExceptionClassifier;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Default exception classifier,an exception is fatal when:
+ * 1) it is a recoverable or non-transient connection exception(JDBC4 subclasses)
+ * 2) its SQLState is in class 08(connection exception) or a known fatal state(PostgreSQL admin shutdown)
+ * 3) its vendor code is a known fatal code of database(MySQL/MariaDB and Oracle),vendor codes are
+ * checked only when database is known,because same codes have different meanings in databases
+ * <p>
+ * Chained exceptions('getNextException' and cause) are checked too.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class SqlStateExceptionClassifier implements ExceptionClassifier {
+    //admin shutdown,crash shutdown,cannot connect now(PostgreSQL);connection failure(DB2/Derby)
+    private static final Set<String> FatalSqlStates = new HashSet<String>(Arrays.asList(
+            "57P01", "57P02", "57P03", "JZ0C0", "JZ0C1"));
+    //server shutdown,connection killed,lost connection,server gone away
+    private static final Set<Integer> MysqlFatalCodes = new HashSet<Integer>(Arrays.asList(
+            1053, 1077, 1078, 1079, 1080, 1081, 1152, 1153, 1154, 1156, 1157, 1158, 1159, 1160, 1161,
+            1927, 2002, 2003, 2006, 2013, 2055));
+    //session killed,not logged on,shutdown,end-of-file on channel,not connected,lost contact,io error,closed connection
+    private static final Set<Integer> OracleFatalCodes = new HashSet<Integer>(Arrays.asList(
+            28, 1012, 1033, 1034, 1089, 1090, 1092, 3113, 3114, 3134, 3135,
+            12153, 12537, 12547, 12570, 12571, 17002, 17008, 17401, 17410, 17447));
+    //max depth of chained exceptions to check
+    private static final int MaxChainDepth = 8;
+
+    private final Set<Integer> fatalCodes;
+
+    //classify by exception type and SQLState only
+    public SqlStateExceptionClassifier() {
+        this(null);
+    }
+
+    /**
+     * @param databaseProductName product name from database meta data,vendor codes of it are checked
+     */
+    public SqlStateExceptionClassifier(String databaseProductName) {
+        String name = databaseProductName == null ? "" : databaseProductName.toLowerCase(Locale.US);
+        if (name.contains("mysql") || name.contains("mariadb"))
+            fatalCodes = MysqlFatalCodes;
+        else if (name.contains("oracle"))
+            fatalCodes = OracleFatalCodes;
+        else
+            fatalCodes = null;
+    }
+
+    public boolean isFatal(SQLException e) {
+        Throwable t = e;
+        for (int depth = 0; t != null && depth < MaxChainDepth; depth++) {
+            if (t instanceof SQLException) {
+                SQLException se = (SQLException) t;
+                if (se instanceof SQLRecoverableException || se instanceof SQLNonTransientConnectionException)
+                    return true;
+                String state = se.getSQLState();
+                if (state != null && (state.startsWith("08") || FatalSqlStates.contains(state)))
+                    return true;
+                if (fatalCodes != null && fatalCodes.contains(se.getErrorCode()))
+                    return true;
+                t = se.getNextException() != null ? se.getNextException() : se.getCause();
+            } else {
+                t = t.getCause();
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Execution statistic of one normalized sql
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class SqlStatistic {
+    private final String sql;
+    //count inherited from evicted statistic(space-saving),it is the max over-estimation of count
+    private final long countError;
+    private final AtomicLong count;
+    private final AtomicLong totalTime = new AtomicLong(0);//nanoseconds
+    private final AtomicLong maxTime = new AtomicLong(0);//nanoseconds
+    private final AtomicLong errorCount = new AtomicLong(0);
+    private final AtomicLong rows = new AtomicLong(0);
+
+    SqlStatistic(String sql, long countError) {
+        this.sql = sql;
+        this.countError = countError;
+        this.count = new AtomicLong(countError);
+    }
+
+    final void update(final long elapsedNanos, final long rowCount, final boolean failed) {
+        count.incrementAndGet();
+        totalTime.addAndGet(elapsedNanos);
+        long max;
+        do {
+            max = maxTime.get();
+            if (elapsedNanos <= max) break;
+        } while (!maxTime.compareAndSet(max, elapsedNanos));
+        if (failed) errorCount.incrementAndGet();
+        if (rowCount > 0) rows.addAndGet(rowCount);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getCountError() {
+        return countError;
+    }
+
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public String toString() {
+        return "{count:" + count.get() +
+                ",totalTime:" + NANOSECONDS.toMillis(totalTime.get()) + "ms" +
+                ",maxTime:" + NANOSECONDS.toMillis(maxTime.get()) + "ms" +
+                ",errors:" + errorCount.get() +
+                ",rows:" + rows.get() +
+                ",sql:" + sql + "}";
+    }
+}
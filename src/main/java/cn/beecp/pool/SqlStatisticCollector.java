@@ -0,0 +1,223 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.pool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per normalized sql statistic collector,statistics are kept in a bounded map,
+ * when full,a batch of statistics with min count are evicted and new statistic inherits
+ * the max evicted count(space-saving),so memory stays flat under many unique sql.
+ * New statistics are created by one thread at a time,existing ones are updated without lock.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class SqlStatisticCollector {
+    private static final int MAX_SQL_LENGTH = 2048;
+    private static final String BATCH_SQL = "[batch]";
+    private static final int EVICT_PERCENT = 10;//percent of max size evicted in one batch
+    private static final Comparator<SqlStatistic> TotalTimeComparator = new Comparator<SqlStatistic>() {
+        public int compare(SqlStatistic s1, SqlStatistic s2) {
+            return compareLong(s2.getTotalTime(), s1.getTotalTime());
+        }
+    };
+    private static final Comparator<SqlStatistic> CountComparator = new Comparator<SqlStatistic>() {
+        public int compare(SqlStatistic s1, SqlStatistic s2) {
+            return compareLong(s2.getCount(), s1.getCount());
+        }
+    };
+    private static final Comparator<SqlStatistic> MaxTimeComparator = new Comparator<SqlStatistic>() {
+        public int compare(SqlStatistic s1, SqlStatistic s2) {
+            return compareLong(s2.getMaxTime(), s1.getMaxTime());
+        }
+    };
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, SqlStatistic> statisticMap;
+    private final int evictSize;
+    private long evictedCount;//max count of evicted statistics,guarded by this
+
+    SqlStatisticCollector(int maxSize) {
+        this.maxSize = maxSize;
+        this.statisticMap = new ConcurrentHashMap<String, SqlStatistic>(Math.min(maxSize, 256));
+        this.evictSize = Math.max(1, maxSize * EVICT_PERCENT / 100);
+    }
+
+    private static int compareLong(long v1, long v2) {
+        return (v1 < v2) ? -1 : ((v1 == v2) ? 0 : 1);
+    }
+
+    private static long getRowCount(Object result) {
+        if (result instanceof Integer) {
+            return (Integer) result;
+        } else if (result instanceof Long) {
+            return (Long) result;
+        } else if (result instanceof int[]) {
+            long rows = 0;
+            for (int count : (int[]) result)
+                if (count > 0) rows += count;
+            return rows;
+        } else if (result instanceof long[]) {
+            long rows = 0;
+            for (long count : (long[]) result)
+                if (count > 0) rows += count;
+            return rows;
+        } else {
+            return 0;
+        }
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    /**
+     * replace literals with '?',remove comments,collapse whitespaces and value lists,then sql
+     * with different literals are aggregated to one statistic
+     *
+     * @param sql original sql
+     * @return normalized sql
+     */
+    static String normalize(String sql) {
+        if (sql == null) return BATCH_SQL;
+        final int len = sql.length();
+        final StringBuilder buf = new StringBuilder(Math.min(len, MAX_SQL_LENGTH));
+        int i = 0;
+        while (i < len && buf.length() < MAX_SQL_LENGTH) {
+            char c = sql.charAt(i);
+            if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {//block comment
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? len : end + 2;
+                appendSpace(buf);
+            } else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {//line comment
+                int end = sql.indexOf('\n', i + 2);
+                i = end < 0 ? len : end + 1;
+                appendSpace(buf);
+            } else if (c == '"' || c == '`') {//quoted identifier
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? len : end + 1;
+                buf.append(sql, i, end);
+                i = end;
+            } else if (c == '\'') {//string literal
+                i++;
+                while (i < len) {
+                    char d = sql.charAt(i++);
+                    if (d == '\\') {
+                        i++;
+                    } else if (d == '\'') {
+                        if (i < len && sql.charAt(i) == '\'') i++;//escaped quote
+                        else break;
+                    }
+                }
+                appendParameter(buf);
+            } else if (Character.isDigit(c) && (buf.length() == 0 || !isIdentifierChar(buf.charAt(buf.length() - 1)))) {//number literal
+                while (i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                appendParameter(buf);
+            } else if (Character.isWhitespace(c)) {
+                appendSpace(buf);
+                i++;
+            } else if (c == '?') {
+                appendParameter(buf);
+                i++;
+            } else {
+                buf.append(c);
+                i++;
+            }
+        }
+        if (buf.length() > MAX_SQL_LENGTH) buf.setLength(MAX_SQL_LENGTH);
+        int l = buf.length();
+        if (l > 0 && buf.charAt(l - 1) == ' ') buf.setLength(l - 1);
+        return buf.toString();
+    }
+
+    //append a space to separate words,continuous spaces are collapsed to one
+    private static void appendSpace(StringBuilder buf) {
+        if (buf.length() > 0 && buf.charAt(buf.length() - 1) != ' ') buf.append(' ');
+    }
+
+    //append a parameter place holder,'?,?,?' is collapsed to one '?'
+    private static void appendParameter(StringBuilder buf) {
+        int pos = buf.length() - 1;
+        while (pos >= 0 && buf.charAt(pos) == ' ') pos--;
+        if (pos >= 0 && buf.charAt(pos) == ',') {
+            int commaPos = pos--;
+            while (pos >= 0 && buf.charAt(pos) == ' ') pos--;
+            if (pos >= 0 && buf.charAt(pos) == '?') {
+                buf.setLength(pos + 1);
+                return;
+            }
+            pos = commaPos;
+        }
+        buf.append('?');
+    }
+
+    final void add(final String sql, final long elapsedNanos, final Object result, final Throwable cause) {
+        final String key = normalize(sql);
+        SqlStatistic statistic = statisticMap.get(key);
+        if (statistic == null) statistic = createStatistic(key);
+        statistic.update(elapsedNanos, getRowCount(result), cause != null);
+    }
+
+    //single writer,map size never exceeds max size
+    private synchronized SqlStatistic createStatistic(final String key) {
+        SqlStatistic statistic = statisticMap.get(key);
+        if (statistic != null) return statistic;
+        if (statisticMap.size() >= maxSize) evictMinCount();
+        statistic = new SqlStatistic(key, evictedCount);
+        statisticMap.put(key, statistic);
+        return statistic;
+    }
+
+    //evict a batch of statistics with min count,scan and sort cost is shared by next creations
+    private void evictMinCount() {
+        SqlStatistic[] statistics = statisticMap.values().toArray(new SqlStatistic[0]);
+        int size = statistics.length;
+        long[] counts = new long[size];//snapshot,counts are updated concurrently
+        for (int i = 0; i < size; i++)
+            counts[i] = statistics[i].getCount();
+        long[] sortedCounts = counts.clone();
+        Arrays.sort(sortedCounts);
+        long maxEvictCount = sortedCounts[Math.min(evictSize, size) - 1];
+
+        for (int i = 0, evicted = 0; i < size && evicted < evictSize; i++) {
+            if (counts[i] <= maxEvictCount) {
+                statisticMap.remove(statistics[i].getSql());
+                evicted++;
+            }
+        }
+        evictedCount = maxEvictCount;
+    }
+
+    final synchronized void clear() {
+        statisticMap.clear();
+        evictedCount = 0;
+    }
+
+    final SqlStatistic[] getTopByTotalTime(int size) {
+        return getTop(size, TotalTimeComparator);
+    }
+
+    final SqlStatistic[] getTopByCount(int size) {
+        return getTop(size, CountComparator);
+    }
+
+    final SqlStatistic[] getTopByMaxTime(int size) {
+        return getTop(size, MaxTimeComparator);
+    }
+
+    private SqlStatistic[] getTop(int size, Comparator<SqlStatistic> comparator) {
+        ArrayList<SqlStatistic> statisticList = new ArrayList<SqlStatistic>(statisticMap.values());
+        Collections.sort(statisticList, comparator);
+        int l = Math.min(size, statisticList.size());
+        return statisticList.subList(0, l).toArray(new SqlStatistic[l]);
+    }
+}
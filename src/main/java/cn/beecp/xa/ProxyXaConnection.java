@@ -15,43 +15,63 @@ import javax.transaction.xa.XAException;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import static cn.beecp.pool.PoolStaticCenter.ConnectionClosedException;
 import static cn.beecp.pool.PoolStaticCenter.XaConnectionClosedException;
 
 
 /**
- * XaConnection Proxy
+ * XaConnection Proxy,a lightweight wrapper over XAConnection cached in pooled connection,
+ * which is returned to pool when closed
  *
  * @author Chris.Liao
  * @version 1.0
  */
 public class ProxyXaConnection implements XAConnection {
-    private XAConnection raw;
+    private final XaConnectionHolder holder;
+    private final ProxyConnectionBase proxyBaseConn;
     private ProxyXaResource proxyXaResource;
-    private ProxyConnectionBase proxyBaseConn;
+    private boolean isClosed;
 
-    public ProxyXaConnection(XAConnection raw, ProxyConnectionBase proxyCon) {
-        this.raw = raw;
-        this.proxyBaseConn = proxyBaseConn;
+    public ProxyXaConnection(ProxyConnectionBase proxyCon) {
+        this(new XaConnectionHolder(proxyCon, null));
+    }
+
+    ProxyXaConnection(XaConnectionHolder holder) {
+        this.holder = holder;
+        this.proxyBaseConn = holder.proxyCon;
     }
 
     void checkClosedForXa() throws XAException {
-        if (proxyBaseConn.getClosedInd())
+        if (isClosed || proxyBaseConn.getClosedInd())
             throw XaConnectionClosedException;
     }
 
+    private void checkClosed() throws SQLException {
+        if (isClosed) throw ConnectionClosedException;
+        proxyBaseConn.checkClosed();
+    }
+
+    final XaConnectionHolder getHolder() {
+        return holder;
+    }
+
     public void close() throws SQLException {
-        proxyBaseConn.close();
+        synchronized (this) {
+            if (isClosed) return;
+            isClosed = true;
+        }
+        holder.release();
     }
 
     public Connection getConnection() throws SQLException {
-        proxyBaseConn.checkClosed();
+        checkClosed();
         return proxyBaseConn;
     }
 
     public javax.transaction.xa.XAResource getXAResource() throws SQLException {
-        proxyBaseConn.checkClosed();
+        checkClosed();
         if (proxyXaResource == null)
-            proxyXaResource = new ProxyXaResource(raw.getXAResource(), this);
+            proxyXaResource = new ProxyXaResource(proxyBaseConn.getRawXaResource(), this);
         return proxyXaResource;
     }
 
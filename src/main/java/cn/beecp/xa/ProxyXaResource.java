@@ -32,7 +32,7 @@ public class ProxyXaResource implements XAResource {
 
     public void end(Xid var1, int var2) throws XAException {
         owner.checkClosedForXa();
-        raw.end(var1, var2);
+        owner.getHolder().end(raw, var1, var2);
     }
 
     public void forget(Xid var1) throws XAException {
@@ -47,7 +47,7 @@ public class ProxyXaResource implements XAResource {
 
     public boolean isSameRM(XAResource var1) throws XAException {
         owner.checkClosedForXa();
-        return raw.isSameRM(var1);
+        return raw.isSameRM(var1 instanceof ProxyXaResource ? ((ProxyXaResource) var1).raw : var1);
     }
 
     public int prepare(Xid var1) throws XAException {
@@ -72,6 +72,6 @@ public class ProxyXaResource implements XAResource {
 
     public void start(Xid var1, int var2) throws XAException {
         owner.checkClosedForXa();
-        raw.start(var1, var2);
+        owner.getHolder().start(raw, var1, var2);
     }
 }
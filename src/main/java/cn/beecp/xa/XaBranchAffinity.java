@@ -0,0 +1,53 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.xa;
+
+import cn.beecp.pool.ProxyConnectionBase;
+
+import javax.sql.XAConnection;
+
+/**
+ * Transaction branch affinity of a data source,when a branch is started on current thread,
+ * XaConnections got by the thread share the connection enlisted in the branch until it ends.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class XaBranchAffinity {
+    private final ThreadLocal<XaConnectionHolder> activeHolder = new ThreadLocal<XaConnectionHolder>();
+
+    /**
+     * get XaConnection sharing connection of active branch on current thread
+     *
+     * @return null if not exist active branch on current thread
+     */
+    public XAConnection getActiveXaConnection() {
+        XaConnectionHolder holder = activeHolder.get();
+        if (holder == null) return null;
+        if (holder.isBranchActive() && holder.retain()) return new ProxyXaConnection(holder);
+        activeHolder.remove();
+        return null;
+    }
+
+    /**
+     * create XaConnection on a borrowed connection
+     *
+     * @param proxyCon borrowed connection
+     * @return XaConnection
+     */
+    public XAConnection createXaConnection(ProxyConnectionBase proxyCon) {
+        return new ProxyXaConnection(new XaConnectionHolder(proxyCon, this));
+    }
+
+    void bind(XaConnectionHolder holder) {
+        activeHolder.set(holder);
+    }
+
+    void unbind(XaConnectionHolder holder) {
+        if (activeHolder.get() == holder) activeHolder.remove();
+    }
+}
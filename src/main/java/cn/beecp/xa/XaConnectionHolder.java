@@ -0,0 +1,91 @@
+/*
+ * Copyright(C) Chris2018998
+ * Contact:Chris2018998@tom.com
+ *
+ * Licensed under GNU General Public License version 3.0.
+ */
+package cn.beecp.xa;
+
+import cn.beecp.pool.ProxyConnectionBase;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Borrowed connection shared by XaConnection proxies,it is returned to pool after all proxies closed.
+ * Only one branch is active on it,enlistments of the active branch are joined locally.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class XaConnectionHolder {
+    final ProxyConnectionBase proxyCon;
+    private final XaBranchAffinity affinity;//null when branch affinity not enabled
+    private int openCount = 1;
+    private Xid activeXid;
+    private int joinCount;
+
+    XaConnectionHolder(ProxyConnectionBase proxyCon, XaBranchAffinity affinity) {
+        this.proxyCon = proxyCon;
+        this.affinity = affinity;
+    }
+
+    private static boolean isSameXid(Xid a, Xid b) {
+        return a == b || (a != null && b != null && a.getFormatId() == b.getFormatId()
+                && Arrays.equals(a.getGlobalTransactionId(), b.getGlobalTransactionId())
+                && Arrays.equals(a.getBranchQualifier(), b.getBranchQualifier()));
+    }
+
+    //called by a new proxy to share this connection,return false when released
+    synchronized boolean retain() {
+        if (openCount == 0 || proxyCon.getClosedInd()) return false;
+        openCount++;
+        return true;
+    }
+
+    //called when a proxy closed
+    void release() throws SQLException {
+        boolean last;
+        synchronized (this) {
+            last = --openCount == 0;
+        }
+        if (last) proxyCon.close();
+    }
+
+    synchronized boolean isBranchActive() {
+        return activeXid != null && !proxyCon.getClosedInd();
+    }
+
+    void start(XAResource raw, Xid xid, int flags) throws XAException {
+        synchronized (this) {
+            if (activeXid != null && isSameXid(activeXid, xid)) {//join active branch locally
+                joinCount++;
+                return;
+            }
+        }
+        raw.start(xid, flags);
+        synchronized (this) {
+            activeXid = xid;
+            joinCount = 1;
+        }
+        if (affinity != null) affinity.bind(this);
+    }
+
+    void end(XAResource raw, Xid xid, int flags) throws XAException {
+        synchronized (this) {
+            if (activeXid != null && isSameXid(activeXid, xid) && --joinCount > 0 && flags != XAResource.TMFAIL)
+                return;//other enlistments not end
+        }
+        raw.end(xid, flags);
+        synchronized (this) {
+            if (isSameXid(activeXid, xid)) {
+                activeXid = null;
+                joinCount = 0;
+            }
+        }
+        if (affinity != null) affinity.unbind(this);
+    }
+}
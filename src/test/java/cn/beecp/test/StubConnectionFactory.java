@@ -0,0 +1,215 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test;
+
+import cn.beecp.RawConnectionFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory connection factory for tests without database,connections keep session state
+ * and calls on connections and statements are recorded as 'con.method(firstArg)' and
+ * 'stm.method(firstArg)'.Sql containing 'FAIL' throws a syntax error(SQLState 42000),
+ * sql containing 'BROKEN' throws a communication error(SQLState 08S01).
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public class StubConnectionFactory implements RawConnectionFactory {
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger createdCount = new AtomicInteger(0);
+    private final AtomicInteger closedCount = new AtomicInteger(0);
+    private volatile boolean down;
+    private volatile long createDelayMs;
+    private volatile String driverName = "Stub Driver";
+    private volatile String url = "jdbc:stub://localhost/test";
+    private volatile int databaseMajorVersion = 8;
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == float.class) return 0F;
+        if (type == double.class) return 0D;
+        return null;
+    }
+
+    private static String firstArg(Object[] args) {
+        return args != null && args.length > 0 ? "(" + args[0] + ")" : "";
+    }
+
+    public Connection create() throws SQLException {
+        if (createDelayMs > 0L) {
+            try {
+                Thread.sleep(createDelayMs);
+            } catch (InterruptedException e) {
+                throw new SQLException("Interrupted in creation", e);
+            }
+        }
+        if (down) throw new SQLException("Database is down", "08001");
+        createdCount.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(StubConnectionFactory.class.getClassLoader(), new Class<?>[]{Connection.class}, new ConnectionHandler());
+    }
+
+    public List<String> getCalls() {
+        synchronized (calls) {
+            return new ArrayList<String>(calls);
+        }
+    }
+
+    public void clearCalls() {
+        calls.clear();
+    }
+
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public int getClosedCount() {
+        return closedCount.get();
+    }
+
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+
+    public void setCreateDelayMs(long createDelayMs) {
+        this.createDelayMs = createDelayMs;
+    }
+
+    public void setDriverName(String driverName) {
+        this.driverName = driverName;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public void setDatabaseMajorVersion(int databaseMajorVersion) {
+        this.databaseMajorVersion = databaseMajorVersion;
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private boolean autoCommit = true;
+        private boolean readOnly;
+        private int transactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
+        private String catalog;
+        private String schema;
+        private boolean closed;
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if ("equals".equals(name)) return proxy == args[0];
+            if ("toString".equals(name)) return "StubConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+            calls.add("con." + name + firstArg(args));
+
+            if ("isValid".equals(name)) return !closed;
+            if ("isClosed".equals(name)) return closed;
+            if ("close".equals(name)) {
+                if (!closed) closedCount.incrementAndGet();
+                closed = true;
+                return null;
+            }
+            if (closed) throw new SQLException("Connection closed", "08003");
+            if ("getAutoCommit".equals(name)) return autoCommit;
+            if ("setAutoCommit".equals(name)) {
+                autoCommit = (Boolean) args[0];
+                return null;
+            }
+            if ("isReadOnly".equals(name)) return readOnly;
+            if ("setReadOnly".equals(name)) {
+                readOnly = (Boolean) args[0];
+                return null;
+            }
+            if ("getTransactionIsolation".equals(name)) return transactionIsolation;
+            if ("setTransactionIsolation".equals(name)) {
+                transactionIsolation = (Integer) args[0];
+                return null;
+            }
+            if ("getCatalog".equals(name)) return catalog;
+            if ("setCatalog".equals(name)) {
+                catalog = (String) args[0];
+                return null;
+            }
+            if ("getSchema".equals(name)) return schema;
+            if ("setSchema".equals(name)) {
+                schema = (String) args[0];
+                return null;
+            }
+            if ("getMetaData".equals(name)) return createMetaData();
+            if (name.startsWith("create") || name.startsWith("prepare")) {
+                if (Statement.class.isAssignableFrom(method.getReturnType()))
+                    return createStatement(method.getReturnType());
+            }
+            return defaultValue(method.getReturnType());
+        }
+    }
+
+    private DatabaseMetaData createMetaData() {
+        return (DatabaseMetaData) Proxy.newProxyInstance(StubConnectionFactory.class.getClassLoader(), new Class<?>[]{DatabaseMetaData.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final String name = method.getName();
+                if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                if ("equals".equals(name)) return proxy == args[0];
+                if ("getDriverName".equals(name)) return driverName;
+                if ("getURL".equals(name)) return url;
+                if ("getDatabaseMajorVersion".equals(name)) return databaseMajorVersion;
+                if ("getDatabaseProductName".equals(name)) return driverName;
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private Object createStatement(final Class<?> type) {
+        return Proxy.newProxyInstance(StubConnectionFactory.class.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                final String name = method.getName();
+                if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                if ("equals".equals(name)) return proxy == args[0];
+                calls.add("stm." + name + firstArg(args));
+                if (name.startsWith("execute") && args != null && args.length > 0 && args[0] instanceof String) {
+                    String sql = (String) args[0];
+                    if (sql.contains("FAIL")) throw new SQLException("Syntax error", "42000");
+                    if (sql.contains("BROKEN")) throw new SQLException("Communications link failure", "08S01");
+                }
+                if ("executeQuery".equals(name) || "getResultSet".equals(name)) return createResultSet();
+                if ("executeBatch".equals(name)) return new int[0];
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private ResultSet createResultSet() {
+        return (ResultSet) Proxy.newProxyInstance(StubConnectionFactory.class.getClassLoader(), new Class<?>[]{ResultSet.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final String name = method.getName();
+                if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                if ("equals".equals(name)) return proxy == args[0];
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+}
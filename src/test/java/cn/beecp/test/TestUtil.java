@@ -18,7 +18,10 @@ package cn.beecp.test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
@@ -48,6 +51,45 @@ public class TestUtil {
         }
     }
 
+    //create an object of class which is not visible to test
+    public static Object createObject(String className, Class<?>[] parameterTypes, Object... args) {
+        try {
+            Constructor<?> constructor = Class.forName(className).getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw toRuntimeException(e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //invoke a method which is not visible to test,pass a class as target for static method
+    public static Object invokeMethod(Object target, String methodName, Class<?>[] parameterTypes, Object... args) {
+        try {
+            Class<?> clazz = target instanceof Class ? (Class<?>) target : target.getClass();
+            Method method = null;
+            for (; method == null && clazz != null; clazz = clazz.getSuperclass()) {//search in super classes
+                try {
+                    method = clazz.getDeclaredMethod(methodName, parameterTypes);
+                } catch (NoSuchMethodException e) {
+                    if (clazz.getSuperclass() == null) throw e;
+                }
+            }
+            method.setAccessible(true);
+            return method.invoke(target instanceof Class ? null : target, args);
+        } catch (InvocationTargetException e) {
+            throw toRuntimeException(e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static RuntimeException toRuntimeException(Throwable e) {
+        if (e instanceof Error) throw (Error) e;
+        return e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    }
+
     public final static void oclose(ResultSet r) {
         try {
             r.close();
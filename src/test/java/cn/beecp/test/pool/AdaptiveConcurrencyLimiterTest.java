@@ -0,0 +1,119 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * AIMD limit of adaptive concurrency limiter,no database required
+ */
+public class AdaptiveConcurrencyLimiterTest extends TestCase {
+
+    private static Object createLimiter(int minLimit, int maxLimit, boolean fair) {
+        return TestUtil.createObject("cn.beecp.pool.AdaptiveConcurrencyLimiter", new Class<?>[]{int.class, int.class, boolean.class}, minLimit, maxLimit, fair);
+    }
+
+    private static boolean tryAcquire(Object limiter, long timeoutNs) {
+        return (Boolean) TestUtil.invokeMethod(limiter, "tryAcquire", new Class<?>[]{long.class}, timeoutNs);
+    }
+
+    private static void release(Object limiter) {
+        TestUtil.invokeMethod(limiter, "release", new Class<?>[0]);
+    }
+
+    private static void onSample(Object limiter, long latencyNanos, boolean success) {
+        TestUtil.invokeMethod(limiter, "onSample", new Class<?>[]{long.class, boolean.class}, latencyNanos, success);
+    }
+
+    private static int getLimit(Object limiter) {
+        return (Integer) TestUtil.invokeMethod(limiter, "getLimit", new Class<?>[0]);
+    }
+
+    private static int getInFlight(Object limiter) {
+        return (Integer) TestUtil.invokeMethod(limiter, "getInFlight", new Class<?>[0]);
+    }
+
+    private static int getWaiting(Object limiter) {
+        return (Integer) TestUtil.invokeMethod(limiter, "getWaiting", new Class<?>[0]);
+    }
+
+    public void testBackoffOnFailure() {
+        Object limiter = createLimiter(2, 10, false);
+        if (getLimit(limiter) != 10) TestUtil.assertError("Initial limit expect:%s,actual:%s", 10, getLimit(limiter));
+        onSample(limiter, MILLISECONDS.toNanos(1), false);
+        if (getLimit(limiter) != 7) TestUtil.assertError("Limit after failure expect:%s,actual:%s", 7, getLimit(limiter));
+        for (int i = 0; i < 10; i++)
+            onSample(limiter, MILLISECONDS.toNanos(1), false);
+        if (getLimit(limiter) != 2) TestUtil.assertError("Limit not kept at min expect:%s,actual:%s", 2, getLimit(limiter));
+    }
+
+    public void testBackoffOnSlowSample() {
+        Object limiter = createLimiter(1, 10, false);
+        onSample(limiter, MILLISECONDS.toNanos(10), true);
+        if (getLimit(limiter) != 10) TestUtil.assertError("Limit changed by first sample expect:%s,actual:%s", 10, getLimit(limiter));
+        onSample(limiter, MILLISECONDS.toNanos(30), true);//over double of smoothed latency
+        if (getLimit(limiter) != 7) TestUtil.assertError("Limit after slow sample expect:%s,actual:%s", 7, getLimit(limiter));
+    }
+
+    public void testJitterNotSlow() {
+        Object limiter = createLimiter(1, 10, false);
+        onSample(limiter, MICROSECONDS.toNanos(100), true);
+        onSample(limiter, MICROSECONDS.toNanos(500), true);//five times,but within slack
+        if (getLimit(limiter) != 10) TestUtil.assertError("Limit cut by jitter expect:%s,actual:%s", 10, getLimit(limiter));
+    }
+
+    public void testAdditiveGrowth() throws Exception {
+        Object limiter = createLimiter(1, 4, false);
+        onSample(limiter, MILLISECONDS.toNanos(1), false);//4 * 0.7 = 2.8
+        if (getLimit(limiter) != 2) TestUtil.assertError("Limit after failure expect:%s,actual:%s", 2, getLimit(limiter));
+
+        for (int i = 0; i < 4; i++)//not grown when limit is not used
+            onSample(limiter, MILLISECONDS.toNanos(1), true);
+        if (getLimit(limiter) != 2) TestUtil.assertError("Limit grown without usage expect:%s,actual:%s", 2, getLimit(limiter));
+
+        tryAcquire(limiter, 0L);
+        tryAcquire(limiter, 0L);
+        onSample(limiter, MILLISECONDS.toNanos(1), true);//2.8 + 1/2.8
+        if (getLimit(limiter) != 3) TestUtil.assertError("Limit after healthy sample expect:%s,actual:%s", 3, getLimit(limiter));
+        for (int i = 0; i < 20; i++)
+            onSample(limiter, MILLISECONDS.toNanos(1), true);
+        if (getLimit(limiter) != 4) TestUtil.assertError("Limit not kept at max expect:%s,actual:%s", 4, getLimit(limiter));
+    }
+
+    public void testAcquireInLimit() throws Exception {
+        final Object limiter = createLimiter(1, 1, false);
+        if (!tryAcquire(limiter, 0L)) TestUtil.assertError("Permit not acquired");
+        if (tryAcquire(limiter, MILLISECONDS.toNanos(10))) TestUtil.assertError("Permit acquired over limit");
+
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    //do nothing
+                }
+                release(limiter);
+            }
+        }.start();
+        if (!tryAcquire(limiter, MILLISECONDS.toNanos(2000))) TestUtil.assertError("Waiter not woken up by release");
+        if (getInFlight(limiter) != 1) TestUtil.assertError("In-flight expect:%s,actual:%s", 1, getInFlight(limiter));
+        if (getWaiting(limiter) != 0) TestUtil.assertError("Waiting expect:%s,actual:%s", 0, getWaiting(limiter));
+    }
+}
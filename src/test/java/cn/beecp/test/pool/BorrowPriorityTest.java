@@ -0,0 +1,160 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BorrowPriority;
+import cn.beecp.pool.ConnectionPoolJmxBean;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Borrower priorities,transfer order and reserved connections with in-memory connections
+ */
+public class BorrowPriorityTest extends TestCase {
+
+    private static BeeDataSource createDataSource(int maxActive, int reservedSize, long maxWait) {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(maxActive);
+        config.setBorrowSemaphoreSize(maxActive + 2);
+        config.setHighPriorityReservedSize(reservedSize);
+        config.setMaxWait(maxWait);
+        config.setConnectionFactory(new StubConnectionFactory());
+        return new BeeDataSource(config);
+    }
+
+    private static int getSharedPermits(BeeDataSource ds) {
+        Object pool = TestUtil.getFieldValue(ds, "pool");
+        return ((Semaphore) TestUtil.getFieldValue(pool, "sharedSemaphore")).availablePermits();
+    }
+
+    private static boolean failToBorrow(BeeDataSource ds, BorrowPriority priority) {
+        try {
+            ds.getConnection(priority).close();
+            return false;
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    public void testReservedForHigh() throws Exception {
+        BeeDataSource ds = createDataSource(2, 1, 100);
+        try {
+            Connection con = ds.getConnection(BorrowPriority.NORMAL);
+            try {
+                if (getSharedPermits(ds) != 0) TestUtil.assertError("Shared permits expect:%s,actual:%s", 0, getSharedPermits(ds));
+                if (!failToBorrow(ds, BorrowPriority.LOW)) TestUtil.assertError("Reserved connection borrowed by low priority");
+                if (!failToBorrow(ds, BorrowPriority.NORMAL)) TestUtil.assertError("Reserved connection borrowed by normal priority");
+                if (getSharedPermits(ds) != 0) TestUtil.assertError("Shared permit leaked by failed borrower");
+                if (failToBorrow(ds, BorrowPriority.HIGH)) TestUtil.assertError("Reserved connection not borrowed by high priority");
+            } finally {
+                con.close();
+            }
+            if (getSharedPermits(ds) != 1) TestUtil.assertError("Shared permits expect:%s,actual:%s", 1, getSharedPermits(ds));
+            if (failToBorrow(ds, BorrowPriority.NORMAL)) TestUtil.assertError("Connection not borrowed after shared permit released");
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testThreadPriority() throws Exception {
+        BeeDataSource ds = createDataSource(2, 1, 100);
+        try {
+            Connection con = ds.getConnection();
+            try {
+                try {
+                    ds.getConnection().close();
+                    TestUtil.assertError("Reserved connection borrowed by default priority");
+                } catch (SQLException e) {
+                }
+                ds.setThreadBorrowPriority(BorrowPriority.HIGH);
+                ds.getConnection().close();
+            } finally {
+                ds.setThreadBorrowPriority(null);
+                con.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testHighPriorityTransferFirst() throws Exception {
+        BeeDataSource ds = createDataSource(1, 0, 3000);
+        try {
+            ConnectionPoolJmxBean pool = (ConnectionPoolJmxBean) TestUtil.getFieldValue(ds, "pool");
+            List<BorrowPriority> orderList = Collections.synchronizedList(new ArrayList<BorrowPriority>());
+            BorrowThread low = new BorrowThread(ds, BorrowPriority.LOW, orderList);
+            BorrowThread high = new BorrowThread(ds, BorrowPriority.HIGH, orderList);
+            Connection con = ds.getConnection();
+            try {
+                low.start();
+                waitTransferWaiters(pool, 1);
+                high.start();
+                waitTransferWaiters(pool, 2);
+            } finally {
+                con.close();
+            }
+            low.join();
+            high.join();
+            if (low.failure != null || high.failure != null) TestUtil.assertError("Waiter failed:" + low.failure + "," + high.failure);
+            if (!"[HIGH, LOW]".equals(orderList.toString()))
+                TestUtil.assertError("Transfer order expect:%s,actual:%s", "[HIGH, LOW]", orderList);
+        } finally {
+            ds.close();
+        }
+    }
+
+    private static void waitTransferWaiters(ConnectionPoolJmxBean pool, int size) throws InterruptedException {
+        for (int i = 0; i < 100 && pool.getTransferWaitingSize() < size; i++)
+            Thread.sleep(20);
+        if (pool.getTransferWaitingSize() != size)
+            TestUtil.assertError("Transfer waiters expect:%s,actual:%s", size, pool.getTransferWaitingSize());
+    }
+
+    private static final class BorrowThread extends Thread {
+        private final BeeDataSource ds;
+        private final BorrowPriority priority;
+        private final List<BorrowPriority> orderList;
+        private volatile SQLException failure;
+
+        BorrowThread(BeeDataSource ds, BorrowPriority priority, List<BorrowPriority> orderList) {
+            this.ds = ds;
+            this.priority = priority;
+            this.orderList = orderList;
+        }
+
+        public void run() {
+            try {
+                Connection con = ds.getConnection(priority);
+                orderList.add(priority);
+                Thread.sleep(50);
+                con.close();
+            } catch (SQLException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Adaptive borrow semaphore size computation,no database required
+ */
+public class BorrowSemaphoreControllerTest extends TestCase {
+    private static final long Window = SECONDS.toNanos(1);
+
+    private static Object createController(int minSize, int maxSize) {
+        return TestUtil.createObject("cn.beecp.pool.BorrowSemaphoreController", new Class<?>[]{int.class, int.class}, minSize, maxSize);
+    }
+
+    private static void recordWait(Object controller, long nanos) {
+        TestUtil.invokeMethod(controller, "recordWait", new Class<?>[]{long.class}, nanos);
+    }
+
+    private static void recordHold(Object controller, long nanos) {
+        TestUtil.invokeMethod(controller, "recordHold", new Class<?>[]{long.class}, nanos);
+    }
+
+    private static int computeSize(Object controller, int curSize, int semaphoreWaiter, int transferWaiter, long windowNanos) {
+        return (Integer) TestUtil.invokeMethod(controller, "computeSize", new Class<?>[]{int.class, int.class, int.class, long.class},
+                curSize, semaphoreWaiter, transferWaiter, windowNanos);
+    }
+
+    private static void record(Object controller, int count, long waitNanos, long holdNanos) {
+        for (int i = 0; i < count; i++) {
+            recordWait(controller, waitNanos);
+            recordHold(controller, holdNanos);
+        }
+    }
+
+    public void testNoSamples() {
+        Object controller = createController(1, 20);
+        int size = computeSize(controller, 5, 0, 0, Window);
+        if (size != 5) TestUtil.assertError("Size without samples expect:%s,actual:%s", 5, size);
+    }
+
+    public void testLittleLaw() {
+        Object controller = createController(1, 20);
+        record(controller, 10, 0L, MILLISECONDS.toNanos(200));//10/s * 0.2s = 2,with headroom 2.4
+        int size = computeSize(controller, 10, 0, 0, Window);
+        if (size != 3) TestUtil.assertError("Size by Little's law expect:%s,actual:%s", 3, size);
+
+        record(controller, 20, MILLISECONDS.toNanos(100), MILLISECONDS.toNanos(150));//20/s * 0.25s = 5,with headroom 6
+        size = computeSize(controller, 3, 0, 0, Window);
+        if (size != 6) TestUtil.assertError("Size by Little's law expect:%s,actual:%s", 6, size);
+
+        size = computeSize(controller, 6, 0, 0, Window);//samples cleared
+        if (size != 6) TestUtil.assertError("Size after samples cleared expect:%s,actual:%s", 6, size);
+    }
+
+    public void testSizeBounds() {
+        Object controller = createController(2, 8);
+        record(controller, 1, 0L, MILLISECONDS.toNanos(1));
+        int size = computeSize(controller, 5, 0, 0, Window);
+        if (size != 2) TestUtil.assertError("Size not kept at min expect:%s,actual:%s", 2, size);
+
+        record(controller, 100, 0L, SECONDS.toNanos(1));
+        size = computeSize(controller, 5, 0, 0, Window);
+        if (size != 8) TestUtil.assertError("Size not kept at max expect:%s,actual:%s", 8, size);
+    }
+
+    public void testP99ClimbOnSemaphore() {
+        Object controller = createController(1, 20);
+        record(controller, 100, MICROSECONDS.toNanos(10), 0L);//smoothed p99 is 16us
+        computeSize(controller, 10, 0, 0, Window);
+
+        record(controller, 98, MICROSECONDS.toNanos(10), 0L);
+        record(controller, 2, MILLISECONDS.toNanos(5), 0L);//p99 climbs to about 8ms
+        int size = computeSize(controller, 10, 3, 1, Window);
+        if (size != 11) TestUtil.assertError("Size not raised by starved semaphore expect:%s,actual:%s", 11, size);
+    }
+
+    public void testP99ClimbOnTransfer() {
+        Object controller = createController(1, 40);
+        record(controller, 100, MICROSECONDS.toNanos(10), MILLISECONDS.toNanos(200));
+        computeSize(controller, 10, 0, 0, Window);
+
+        record(controller, 98, MICROSECONDS.toNanos(10), MILLISECONDS.toNanos(200));
+        record(controller, 2, MILLISECONDS.toNanos(5), MILLISECONDS.toNanos(200));//Little's law size is 25
+        int size = computeSize(controller, 10, 0, 2, Window);
+        if (size != 8) TestUtil.assertError("Size not cut by transfer waiters expect:%s,actual:%s", 8, size);
+    }
+
+    public void testP99IgnoreOutlier() {
+        Object controller = createController(1, 20);
+        record(controller, 100, MICROSECONDS.toNanos(10), 0L);
+        computeSize(controller, 10, 0, 0, Window);
+
+        record(controller, 99, MICROSECONDS.toNanos(10), 0L);
+        record(controller, 1, MILLISECONDS.toNanos(50), 0L);//over p99
+        int size = computeSize(controller, 10, 3, 0, Window);
+        if (size != 1) TestUtil.assertError("Size raised by outlier expect:%s,actual:%s", 1, size);
+    }
+}
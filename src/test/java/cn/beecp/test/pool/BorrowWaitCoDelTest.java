@@ -0,0 +1,88 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * CoDel of borrow waiting,no database required
+ */
+public class BorrowWaitCoDelTest extends TestCase {
+    private static final long Target = MILLISECONDS.toNanos(5);
+    private static final long Interval = MILLISECONDS.toNanos(100);
+
+    private static Object createCoDel(long targetNanos, long intervalNanos) {
+        return TestUtil.createObject("cn.beecp.pool.BorrowWaitCoDel", new Class<?>[]{long.class, long.class}, targetNanos, intervalNanos);
+    }
+
+    private static void record(Object codel, long waitNanos) {
+        TestUtil.invokeMethod(codel, "record", new Class<?>[]{long.class}, waitNanos);
+    }
+
+    private static long limitWait(Object codel, long waitNanos) {
+        return (Long) TestUtil.invokeMethod(codel, "limitWait", new Class<?>[]{long.class}, waitNanos);
+    }
+
+    private static boolean isOverloaded(Object codel) {
+        return (Boolean) TestUtil.invokeMethod(codel, "isOverloaded", new Class<?>[0]);
+    }
+
+    //record wait time in current interval,then record once more after interval end
+    private static void recordInterval(Object codel, long... waitNanos) throws InterruptedException {
+        for (long wait : waitNanos)
+            record(codel, wait);
+        Thread.sleep(110);
+        record(codel, waitNanos[waitNanos.length - 1]);
+    }
+
+    public void testUnderTarget() throws Exception {
+        Object codel = createCoDel(Target, Interval);
+        recordInterval(codel, MILLISECONDS.toNanos(1), MILLISECONDS.toNanos(2));
+        if (isOverloaded(codel)) TestUtil.assertError("Overloaded by wait time under target");
+        if (limitWait(codel, SECONDS.toNanos(1)) != SECONDS.toNanos(1)) TestUtil.assertError("Wait time limited when not overloaded");
+    }
+
+    public void testStandingQueue() throws Exception {
+        Object codel = createCoDel(Target, Interval);
+        recordInterval(codel, MILLISECONDS.toNanos(20), MILLISECONDS.toNanos(10));
+        if (!isOverloaded(codel)) TestUtil.assertError("Not overloaded by min wait time over target");
+        if (limitWait(codel, SECONDS.toNanos(1)) != Target)
+            TestUtil.assertError("Wait time in overload expect:%s,actual:%s", Target, limitWait(codel, SECONDS.toNanos(1)));
+        if (limitWait(codel, MILLISECONDS.toNanos(1)) != MILLISECONDS.toNanos(1))
+            TestUtil.assertError("Wait time under target limited");
+
+        recordInterval(codel, MILLISECONDS.toNanos(1));//queue drained
+        if (isOverloaded(codel)) TestUtil.assertError("Overloaded after min wait time under target");
+    }
+
+    public void testBurstNotOverload() throws Exception {
+        Object codel = createCoDel(Target, Interval);
+        recordInterval(codel, MILLISECONDS.toNanos(50), 0L, MILLISECONDS.toNanos(50));//a borrower not waited
+        if (isOverloaded(codel)) TestUtil.assertError("Overloaded by burst with a no-wait borrower");
+    }
+
+    public void testOverloadExpire() throws Exception {
+        Object codel = createCoDel(Target, Interval);
+        recordInterval(codel, MILLISECONDS.toNanos(10));
+        if (!isOverloaded(codel)) TestUtil.assertError("Not overloaded by min wait time over target");
+        Thread.sleep(250);//no wait recorded in one more interval
+        if (isOverloaded(codel)) TestUtil.assertError("Overload not expired without wait records");
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.RawConnectionFactory;
+import cn.beecp.pool.ConnectionPoolJmxBean;
+import cn.beecp.pool.PoolGroup;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker of connection creation test with in-memory connections
+ */
+public class CircuitBreakerTest extends TestCase {
+    private final AtomicInteger createCount = new AtomicInteger(0);
+    private volatile boolean databaseDown;
+    private BeeDataSource ds;
+    private ConnectionPoolJmxBean pool;
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(3);
+        config.setMaxWait(100);
+        config.setCircuitBreakerFailureThreshold(2);
+        config.setCircuitBreakerProbeDelay(50);
+        config.setCircuitBreakerProbeMaxDelay(100);
+        config.setConnectionFactory(new RawConnectionFactory() {
+            public Connection create() throws SQLException {
+                createCount.incrementAndGet();
+                if (databaseDown) throw new SQLException("Database is down", "08001");
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("isValid".equals(name)) return Boolean.TRUE;
+                        if ("getAutoCommit".equals(name)) return Boolean.TRUE;
+                        if ("getTransactionIsolation".equals(name)) return Connection.TRANSACTION_READ_COMMITTED;
+                        if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                        if ("equals".equals(name)) return proxy == args[0];
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+            }
+        });
+        ds = new BeeDataSource(config);
+        pool = (ConnectionPoolJmxBean) TestUtil.getFieldValue(ds, "pool");
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    private boolean failToBorrow() {
+        try {
+            ds.getConnection().close();
+            return false;
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    public void testOpenAndProbe() throws Exception {
+        ds.clearAllConnections(true);
+        Connection con = ds.getConnection();
+        databaseDown = true;
+        if (!failToBorrow()) TestUtil.assertError("Connection created from down database");
+        if (pool.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker opened before threshold");
+        if (!failToBorrow()) TestUtil.assertError("Connection created from down database");
+        if (!pool.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker not opened at threshold");
+
+        int count = createCount.get();
+        long begin = System.currentTimeMillis();
+        if (!failToBorrow()) TestUtil.assertError("Connection borrowed in open circuit breaker");
+        if (System.currentTimeMillis() - begin > 50) TestUtil.assertError("Borrower not failed fast in open circuit breaker");
+        Thread.sleep(120);//probes on down database
+        if (createCount.get() <= count) TestUtil.assertError("Circuit breaker not probed");
+        if (!pool.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker closed by failed probe");
+
+        databaseDown = false;
+        for (int i = 0; i < 100 && pool.isCircuitBreakerOpen(); i++)
+            Thread.sleep(20);
+        if (pool.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker not closed by successful probe");
+        if (failToBorrow()) TestUtil.assertError("Connection not borrowed after circuit breaker closed");
+        con.close();
+    }
+
+    public void testFailureCountReset() throws Exception {
+        ds.clearAllConnections(true);
+        Connection con1 = ds.getConnection();
+        databaseDown = true;
+        failToBorrow();
+        databaseDown = false;
+        Connection con2 = ds.getConnection();//success resets failure count
+        databaseDown = true;
+        failToBorrow();
+        databaseDown = false;
+        if (pool.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker opened by non continuous failures");
+        con1.close();
+        con2.close();
+    }
+
+    public void testInitFailureNotCounted() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setDown(true);
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setInitialSize(0);
+        config.setCircuitBreakerFailureThreshold(1);
+        config.setConnectionFactory(factory);
+        BeeDataSource initDs = new BeeDataSource(config);
+        try {
+            ConnectionPoolJmxBean initPool = (ConnectionPoolJmxBean) TestUtil.getFieldValue(initDs, "pool");
+            if (initPool.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker opened by failure in pool initialization");
+        } finally {
+            initDs.close();
+        }
+    }
+
+    public void testProbeOnFullGroup() throws Exception {
+        PoolGroup group = new PoolGroup("breakerGroup", 2);
+        StubConnectionFactory factory1 = new StubConnectionFactory();
+        StubConnectionFactory factory2 = new StubConnectionFactory();
+        BeeDataSourceConfig config1 = new BeeDataSourceConfig();
+        config1.setMaxActive(2);
+        config1.setMaxWait(100);
+        config1.setPoolGroup(group);
+        config1.setCircuitBreakerFailureThreshold(1);
+        config1.setCircuitBreakerProbeDelay(20);
+        config1.setCircuitBreakerProbeMaxDelay(20);
+        config1.setConnectionFactory(factory1);
+        BeeDataSourceConfig config2 = new BeeDataSourceConfig();
+        config2.setMaxActive(1);
+        config2.setPoolGroup(group);
+        config2.setConnectionFactory(factory2);
+
+        BeeDataSource ds1 = new BeeDataSource(config1);
+        BeeDataSource ds2 = new BeeDataSource(config2);
+        boolean ds2Closed = false;
+        try {
+            ConnectionPoolJmxBean pool1 = (ConnectionPoolJmxBean) TestUtil.getFieldValue(ds1, "pool");
+            Connection con1 = ds1.getConnection();
+            try {
+                factory1.setDown(true);
+                try {
+                    ds1.getConnection().close();
+                    TestUtil.assertError("Connection created from down database");
+                } catch (SQLException e) {
+                }
+                if (!pool1.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker not opened at threshold");
+
+                Connection con2 = ds2.getConnection();//group is full
+                try {
+                    factory1.setDown(false);
+                    Thread.sleep(150);//probes on full group
+                    if (!pool1.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker closed by probe without connection");
+                } finally {
+                    con2.close();
+                }
+                ds2.close();//release group permit
+                ds2Closed = true;
+                for (int i = 0; i < 100 && pool1.isCircuitBreakerOpen(); i++)
+                    Thread.sleep(20);
+                if (pool1.isCircuitBreakerOpen()) TestUtil.assertError("Circuit breaker not closed by successful probe");
+            } finally {
+                con1.close();
+            }
+        } finally {
+            if (!ds2Closed) ds2.close();
+            ds1.close();
+        }
+    }
+}
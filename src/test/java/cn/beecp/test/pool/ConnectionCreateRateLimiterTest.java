@@ -0,0 +1,91 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Token bucket math of connection creation rate limiter,no database required
+ */
+public class ConnectionCreateRateLimiterTest extends TestCase {
+
+    private static Object createLimiter(double rate, int burst) {
+        return TestUtil.createObject("cn.beecp.pool.ConnectionCreateRateLimiter", new Class<?>[]{double.class, int.class}, rate, burst);
+    }
+
+    private static boolean tryAcquire(Object limiter, long timeoutNs) {
+        return (Boolean) TestUtil.invokeMethod(limiter, "tryAcquire", new Class<?>[]{long.class}, timeoutNs);
+    }
+
+    private static void release(Object limiter) {
+        TestUtil.invokeMethod(limiter, "release", new Class<?>[0]);
+    }
+
+    public void testBurst() {
+        Object limiter = createLimiter(1, 3);//one token per second
+        for (int i = 0; i < 3; i++)
+            if (!tryAcquire(limiter, 0L)) TestUtil.assertError("Token of burst not acquired at:" + i);
+        if (tryAcquire(limiter, 0L)) TestUtil.assertError("Token acquired over burst");
+    }
+
+    public void testRefill() throws Exception {
+        Object limiter = createLimiter(20, 1);//one token per 50ms
+        if (!tryAcquire(limiter, 0L)) TestUtil.assertError("First token not acquired");
+        if (tryAcquire(limiter, 0L)) TestUtil.assertError("Token acquired before refilled");
+        Thread.sleep(80);
+        if (!tryAcquire(limiter, 0L)) TestUtil.assertError("Token not refilled");
+
+        Thread.sleep(500);//idle time is not accumulated over burst
+        if (!tryAcquire(limiter, 0L)) TestUtil.assertError("Token not refilled after idle");
+        if (tryAcquire(limiter, 0L)) TestUtil.assertError("Token acquired over burst after idle");
+    }
+
+    public void testWaitInTimeout() {
+        Object limiter = createLimiter(20, 1);
+        tryAcquire(limiter, 0L);
+        if (tryAcquire(limiter, MILLISECONDS.toNanos(10))) TestUtil.assertError("Token acquired out of refill time");
+
+        long begin = System.nanoTime();
+        if (!tryAcquire(limiter, MILLISECONDS.toNanos(200))) TestUtil.assertError("Token not acquired in timeout");
+        long tookMs = MILLISECONDS.convert(System.nanoTime() - begin, NANOSECONDS);
+        if (tookMs < 20 || tookMs > 150) TestUtil.assertError("Wait time of token expect:%s,actual:%s", "about 50ms", tookMs + "ms");
+    }
+
+    public void testRelease() {
+        Object limiter = createLimiter(1, 2);
+        tryAcquire(limiter, 0L);
+        tryAcquire(limiter, 0L);
+        release(limiter);//not used token
+        if (!tryAcquire(limiter, 0L)) TestUtil.assertError("Released token not acquired");
+        if (tryAcquire(limiter, 0L)) TestUtil.assertError("Token acquired over burst after release");
+    }
+
+    public void testReleaseOnInterrupt() {
+        Object limiter = createLimiter(10, 1);//one token per 100ms
+        tryAcquire(limiter, 0L);
+        Thread.currentThread().interrupt();
+        boolean acquired = tryAcquire(limiter, MILLISECONDS.toNanos(1000));
+        Thread.interrupted();//clear
+        if (acquired) TestUtil.assertError("Token acquired in interrupted thread");
+
+        //reserved token returned,so next one is available in 100ms(not 200ms)
+        if (!tryAcquire(limiter, MILLISECONDS.toNanos(150))) TestUtil.assertError("Reserved token not returned on interrupt");
+    }
+}
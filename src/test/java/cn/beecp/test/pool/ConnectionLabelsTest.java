@@ -0,0 +1,89 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.ConnectionLabels;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+
+/**
+ * Labeled borrow test with in-memory connection,only properties set by labels are kept on return
+ */
+public class ConnectionLabelsTest extends TestCase {
+    private final StubConnectionFactory factory = new StubConnectionFactory();
+    private BeeDataSource ds;
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(1);
+        config.setConnectionFactory(factory);
+        ds = new BeeDataSource(config);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    public void testUnlabeledPropertyReset() throws Exception {
+        ConnectionLabels labels = new ConnectionLabels(null, "X");
+        Connection con = ds.getConnection(labels);
+        con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);//not in labels
+        con.close();
+
+        factory.clearCalls();
+        con = ds.getConnection(labels);
+        try {
+            if (con.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED)
+                TestUtil.assertError("Isolation expect:%s,actual:%s", Connection.TRANSACTION_READ_COMMITTED, con.getTransactionIsolation());
+            if (!"X".equals(con.getSchema())) TestUtil.assertError("Schema expect:%s,actual:%s", "X", con.getSchema());
+            if (factory.getCalls().contains("con.setSchema(X)")) TestUtil.assertError("Labeled schema not kept on return");
+        } finally {
+            con.close();
+        }
+    }
+
+    public void testLabeledPropertyKept() throws Exception {
+        ConnectionLabels labels = new ConnectionLabels(null, "Y", Connection.TRANSACTION_SERIALIZABLE);
+        Connection con = ds.getConnection(labels);
+        con.setReadOnly(true);//not in labels
+        con.close();
+
+        factory.clearCalls();
+        con = ds.getConnection(labels);
+        try {
+            if (!factory.getCalls().isEmpty()) TestUtil.assertError("Labeled properties applied again,calls expect:%s,actual:%s", "[]", factory.getCalls());
+            if (con.getTransactionIsolation() != Connection.TRANSACTION_SERIALIZABLE)
+                TestUtil.assertError("Isolation expect:%s,actual:%s", Connection.TRANSACTION_SERIALIZABLE, con.getTransactionIsolation());
+            if (con.isReadOnly()) TestUtil.assertError("Unlabeled read-only not reset on return");
+        } finally {
+            con.close();
+        }
+
+        con = ds.getConnection();//unlabeled borrow gets default state
+        try {
+            if (con.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED)
+                TestUtil.assertError("Isolation expect:%s,actual:%s", Connection.TRANSACTION_READ_COMMITTED, con.getTransactionIsolation());
+            if (con.getSchema() != null) TestUtil.assertError("Schema expect:%s,actual:%s", null, con.getSchema());
+        } finally {
+            con.close();
+        }
+    }
+}
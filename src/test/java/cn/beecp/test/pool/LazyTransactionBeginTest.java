@@ -0,0 +1,120 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Lazy transaction begin(pending autoCommit) with in-memory connection
+ */
+public class LazyTransactionBeginTest extends TestCase {
+    private final StubConnectionFactory factory = new StubConnectionFactory();
+    private BeeDataSource ds;
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(1);
+        config.setLazyTransactionBegin(true);
+        config.setConnectionFactory(factory);
+        ds = new BeeDataSource(config);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    public void testCommitAndRollbackSkipped() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            factory.clearCalls();
+            con.setAutoCommit(false);
+            if (con.getAutoCommit()) TestUtil.assertError("AutoCommit expect:%s,actual:%s", false, true);
+            con.commit();
+            con.rollback();
+        } finally {
+            con.close();
+        }
+        List<String> calls = factory.getCalls();
+        if (calls.contains("con.setAutoCommit(false)")) TestUtil.assertError("Pending autoCommit applied without execution");
+        if (calls.contains("con.commit") || calls.contains("con.rollback"))
+            TestUtil.assertError("Commit or rollback called before transaction began,calls expect:%s,actual:%s", "[]", calls);
+        if (calls.contains("con.setAutoCommit(true)")) TestUtil.assertError("Pending autoCommit reset on return");
+    }
+
+    public void testAppliedBeforeExecution() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            factory.clearCalls();
+            con.setAutoCommit(false);
+            Statement st = con.createStatement();
+            try {
+                st.execute("UPDATE t SET a=1");
+            } finally {
+                st.close();
+            }
+            con.commit();
+            List<String> calls = factory.getCalls();
+            int applyPos = calls.indexOf("con.setAutoCommit(false)");
+            if (applyPos < 0 || applyPos > calls.indexOf("stm.execute(UPDATE t SET a=1)"))
+                TestUtil.assertError("AutoCommit not applied before execution,calls expect:%s,actual:%s", "[...con.setAutoCommit(false),stm.execute...]", calls);
+            if (!calls.contains("con.commit")) TestUtil.assertError("Commit skipped after transaction began");
+        } finally {
+            con.close();
+        }
+        if (!factory.getCalls().contains("con.setAutoCommit(true)")) TestUtil.assertError("Applied autoCommit not reset on return");
+    }
+
+    public void testAppliedBeforeSavepoint() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            factory.clearCalls();
+            con.setAutoCommit(false);
+            con.setSavepoint();
+            con.rollback();
+            String calls = "[con.setAutoCommit(false), con.setSavepoint, con.rollback]";
+            if (!calls.equals(factory.getCalls().toString()))
+                TestUtil.assertError("Raw calls expect:%s,actual:%s", calls, factory.getCalls());
+        } finally {
+            con.close();
+        }
+    }
+
+    public void testPendingTurnedBack() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            factory.clearCalls();
+            con.setAutoCommit(false);
+            con.setAutoCommit(true);//back to raw value,nothing pending
+            Statement st = con.createStatement();
+            try {
+                st.execute("UPDATE t SET a=1");
+            } finally {
+                st.close();
+            }
+            if (factory.getCalls().contains("con.setAutoCommit(false)")) TestUtil.assertError("Cancelled autoCommit applied");
+        } finally {
+            con.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.pool.MultiHostConnectionFactory;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static cn.beecp.pool.MultiHostConnectionFactory.POLICY_LEAST_CONNECTIONS;
+import static cn.beecp.pool.MultiHostConnectionFactory.POLICY_ROUND_ROBIN;
+
+/**
+ * Multiple hosts connection factory test with in-memory hosts
+ */
+public class MultiHostConnectionFactoryTest extends TestCase {
+    private static final String Host1 = "jdbc:stub://host1/test";
+    private static final String Host2 = "jdbc:stub://host2/test";
+    private static final String[] Urls = {Host1, Host2};
+
+    public void testFailover() throws Exception {
+        StubDriver driver = new StubDriver(Urls);
+        driver.getHost(Host1).setDown(true);
+        MultiHostConnectionFactory factory = new MultiHostConnectionFactory(Urls, driver, new Properties(), POLICY_ROUND_ROBIN, 1000, 1000, 0);
+        Connection con = factory.create();//host1 failed,retried on host2
+        con.close();
+        if (driver.getHost(Host2).getCreatedCount() != 1) TestUtil.assertError("Connection not created on next host");
+        if (!Arrays.equals(factory.getHostDownStates(), new boolean[]{true, false}))
+            TestUtil.assertError("Host down states expect:%s,actual:%s", "[true, false]", Arrays.toString(factory.getHostDownStates()));
+
+        int attempts = driver.getAttempts(Host1);
+        for (int i = 0; i < 4; i++)
+            factory.create().close();
+        if (driver.getAttempts(Host1) != attempts) TestUtil.assertError("Down host tried in backoff time");
+        if (driver.getHost(Host2).getCreatedCount() != 5)
+            TestUtil.assertError("Created count on host2 expect:%s,actual:%s", 5, driver.getHost(Host2).getCreatedCount());
+    }
+
+    public void testBackoffRetry() throws Exception {
+        StubDriver driver = new StubDriver(Urls);
+        driver.getHost(Host1).setDown(true);
+        MultiHostConnectionFactory factory = new MultiHostConnectionFactory(Urls, driver, new Properties(), POLICY_ROUND_ROBIN, 50, 200, 0);
+        factory.create().close();
+        if (!factory.getHostDownStates()[0]) TestUtil.assertError("Host not marked down after connect failed");
+
+        driver.getHost(Host1).setDown(false);
+        Thread.sleep(80);//backoff elapsed
+        if (factory.getHostDownStates()[0]) TestUtil.assertError("Host still down after backoff time");
+        factory.create().close();
+        factory.create().close();
+        if (driver.getHost(Host1).getCreatedCount() != 1) TestUtil.assertError("Host not retried after backoff time");
+    }
+
+    public void testAllHostsDown() throws Exception {
+        StubDriver driver = new StubDriver(Urls);
+        driver.getHost(Host1).setDown(true);
+        driver.getHost(Host2).setDown(true);
+        MultiHostConnectionFactory factory = new MultiHostConnectionFactory(Urls, driver, new Properties(), POLICY_ROUND_ROBIN, 1000, 1000, 0);
+        try {
+            factory.create().close();
+            TestUtil.assertError("Connection created on down hosts");
+        } catch (SQLException e) {
+            if (!"08001".equals(e.getSQLState())) TestUtil.assertError("SQLState expect:%s,actual:%s", "08001", e.getSQLState());
+        }
+
+        driver.getHost(Host2).setDown(false);
+        factory.create().close();//all hosts down,both are tried
+        if (driver.getHost(Host2).getCreatedCount() != 1) TestUtil.assertError("Down hosts not tried when all hosts down");
+    }
+
+    public void testLeastConnections() throws Exception {
+        StubDriver driver = new StubDriver(Urls);
+        MultiHostConnectionFactory factory = new MultiHostConnectionFactory(Urls, driver, new Properties(), POLICY_LEAST_CONNECTIONS, 1000, 1000, 0);
+        Connection con1 = factory.create();
+        Connection con2 = factory.create();
+        Connection con3 = factory.create();
+        Connection con4 = factory.create();
+        if (!Arrays.equals(factory.getHostConnectionSizes(), new int[]{2, 2}))
+            TestUtil.assertError("Host connection sizes expect:%s,actual:%s", "[2, 2]", Arrays.toString(factory.getHostConnectionSizes()));
+
+        int host1Created = driver.getHost(Host1).getCreatedCount();
+        Connection host1Con = driver.getConnections(Host1)[0];
+        host1Con.close();
+        factory.onClosed(host1Con);
+        factory.onClosed(host1Con);//closed once
+        if (!Arrays.equals(factory.getHostConnectionSizes(), new int[]{1, 2}))
+            TestUtil.assertError("Host connection sizes expect:%s,actual:%s", "[1, 2]", Arrays.toString(factory.getHostConnectionSizes()));
+
+        Connection con5 = factory.create();
+        if (driver.getHost(Host1).getCreatedCount() != host1Created + 1) TestUtil.assertError("Connection not created on host with least connections");
+        Connection[] cons = {con1, con2, con3, con4, con5};
+        for (Connection con : cons) {
+            con.close();
+            factory.onClosed(con);
+        }
+        if (!Arrays.equals(factory.getHostConnectionSizes(), new int[]{0, 0}))
+            TestUtil.assertError("Host connection sizes expect:%s,actual:%s", "[0, 0]", Arrays.toString(factory.getHostConnectionSizes()));
+    }
+
+    public void testHedgeLateConnectionClosed() throws Exception {
+        StubDriver driver = new StubDriver(Urls);
+        driver.getHost(Host1).setCreateDelayMs(200);
+        MultiHostConnectionFactory factory = new MultiHostConnectionFactory(Urls, driver, new Properties(), POLICY_LEAST_CONNECTIONS, 1000, 1000, 20);
+        long begin = System.currentTimeMillis();
+        Connection con = factory.create();//host1 is slow,host2 raced after hedge delay
+        long took = System.currentTimeMillis() - begin;
+        if (took >= 200) TestUtil.assertError("Second host not raced in hedge delay,took:" + took + "ms");
+        if (driver.getHost(Host2).getCreatedCount() != 1) TestUtil.assertError("Connection not created on raced host");
+
+        for (int i = 0; i < 50 && driver.getHost(Host1).getClosedCount() == 0; i++)
+            Thread.sleep(20);
+        if (driver.getHost(Host1).getCreatedCount() != 1) TestUtil.assertError("Slow host not connected");
+        if (driver.getHost(Host1).getClosedCount() != 1) TestUtil.assertError("Late connection not closed");
+        if (!Arrays.equals(factory.getHostConnectionSizes(), new int[]{0, 1}))
+            TestUtil.assertError("Host connection sizes expect:%s,actual:%s", "[0, 1]", Arrays.toString(factory.getHostConnectionSizes()));
+        con.close();
+        factory.onClosed(con);
+    }
+
+    //driver connects in-memory hosts by url
+    private static final class StubDriver implements Driver {
+        private final Map<String, StubConnectionFactory> hosts = new HashMap<String, StubConnectionFactory>();
+        private final Map<String, AtomicInteger> attempts = new HashMap<String, AtomicInteger>();
+        private final Map<String, Connection[]> connections = new ConcurrentHashMap<String, Connection[]>();
+
+        StubDriver(String[] urls) {
+            for (String url : urls) {
+                hosts.put(url, new StubConnectionFactory());
+                attempts.put(url, new AtomicInteger(0));
+                connections.put(url, new Connection[0]);
+            }
+        }
+
+        StubConnectionFactory getHost(String url) {
+            return hosts.get(url);
+        }
+
+        int getAttempts(String url) {
+            return attempts.get(url).get();
+        }
+
+        Connection[] getConnections(String url) {
+            return connections.get(url);
+        }
+
+        public Connection connect(String url, Properties info) throws SQLException {
+            StubConnectionFactory host = hosts.get(url);
+            if (host == null) return null;
+            attempts.get(url).incrementAndGet();
+            Connection con = host.create();
+            synchronized (this) {
+                Connection[] cons = connections.get(url);
+                Connection[] newCons = Arrays.copyOf(cons, cons.length + 1);
+                newCons[cons.length] = con;
+                connections.put(url, newCons);
+            }
+            return con;
+        }
+
+        public boolean acceptsURL(String url) {
+            return hosts.containsKey(url);
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
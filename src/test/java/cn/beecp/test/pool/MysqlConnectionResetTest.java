@@ -0,0 +1,115 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Driver aware reset of MySQL connections with in-memory connections
+ */
+public class MysqlConnectionResetTest extends TestCase {
+
+    private static BeeDataSource createDataSource(StubConnectionFactory factory, String connectProperty) {
+        factory.setDriverName("MySQL Connector/J");
+        factory.setUrl("jdbc:mysql://localhost/test");
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(1);
+        config.setEnableDriverAwareReset(true);
+        config.addConnectProperty(connectProperty);
+        config.setConnectionFactory(factory);
+        return new BeeDataSource(config);
+    }
+
+    //make autoCommit,isolation and readOnly dirty,then return connection
+    private static List<String> resetAll(BeeDataSource ds, StubConnectionFactory factory) throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            con.setAutoCommit(false);
+            con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            con.setReadOnly(true);
+            factory.clearCalls();
+        } finally {
+            con.close();
+        }
+        return factory.getCalls();
+    }
+
+    public void testSetOnServer8() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setDatabaseMajorVersion(8);
+        BeeDataSource ds = createDataSource(factory, null);
+        try {
+            List<String> calls = resetAll(ds, factory);
+            String sql = "stm.execute(SET autocommit=1,SESSION transaction_isolation='READ-COMMITTED',SESSION transaction_read_only=0)";
+            if (!calls.contains(sql)) TestUtil.assertError("Reset sql expect:%s,actual:%s", sql, calls);
+            if (calls.contains("con.setReadOnly(false)")) TestUtil.assertError("ReadOnly reset twice");
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testSetOnServer5() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setDatabaseMajorVersion(5);
+        BeeDataSource ds = createDataSource(factory, null);
+        try {
+            List<String> calls = resetAll(ds, factory);
+            String sql = "stm.execute(SET autocommit=1,SESSION tx_isolation='READ-COMMITTED',SESSION tx_read_only=0)";
+            if (!calls.contains(sql)) TestUtil.assertError("Reset sql expect:%s,actual:%s", sql, calls);
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testOneDirtyFallback() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, null);
+        try {
+            Connection con = ds.getConnection();
+            try {
+                con.setReadOnly(true);
+                factory.clearCalls();
+            } finally {
+                con.close();
+            }
+            List<String> calls = factory.getCalls();
+            if (!calls.contains("con.setReadOnly(false)")) TestUtil.assertError("ReadOnly not reset by setter,calls expect:%s,actual:%s", "con.setReadOnly(false)", calls);
+            if (calls.contains("con.createStatement")) TestUtil.assertError("Reset sql executed for one dirty property");
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testLocalSessionStateProperty() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, "useLocalSessionState=true");
+        try {
+            List<String> calls = resetAll(ds, factory);
+            if (calls.contains("con.createStatement")) TestUtil.assertError("Reset sql executed with local session state");
+            if (!calls.contains("con.setAutoCommit(true)") || !calls.contains("con.setReadOnly(false)"))
+                TestUtil.assertError("Properties not reset by setters,calls expect:%s,actual:%s", "con.setAutoCommit(true),con.setReadOnly(false)", calls);
+        } finally {
+            ds.close();
+        }
+    }
+}
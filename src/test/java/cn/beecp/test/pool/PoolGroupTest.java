@@ -0,0 +1,166 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeDataSourceConfigException;
+import cn.beecp.RawConnectionFactory;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.pool.PoolGroup;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+/**
+ * Reservation accounting of pool group,no database required
+ */
+public class PoolGroupTest extends TestCase {
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    private static void register(PoolGroup group, FastConnectionPool pool, int minSize) {
+        TestUtil.invokeMethod(group, "register", new Class<?>[]{FastConnectionPool.class, int.class}, pool, minSize);
+    }
+
+    private static void unregister(PoolGroup group, FastConnectionPool pool) {
+        TestUtil.invokeMethod(group, "unregister", new Class<?>[]{FastConnectionPool.class}, pool);
+    }
+
+    private static boolean tryAcquire(PoolGroup group, FastConnectionPool pool) {
+        return (Boolean) TestUtil.invokeMethod(group, "tryAcquire", new Class<?>[]{FastConnectionPool.class}, pool);
+    }
+
+    private static void release(PoolGroup group, FastConnectionPool pool) {
+        TestUtil.invokeMethod(group, "release", new Class<?>[]{FastConnectionPool.class}, pool);
+    }
+
+    private static BeeDataSource createDataSource(PoolGroup group, int groupMinSize) {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(4);
+        config.setPoolGroup(group);
+        config.setPoolGroupMinSize(groupMinSize);
+        config.setConnectionFactory(new RawConnectionFactory() {
+            public Connection create() {
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("isValid".equals(name)) return Boolean.TRUE;
+                        if ("getAutoCommit".equals(name)) return Boolean.TRUE;
+                        if ("getTransactionIsolation".equals(name)) return Connection.TRANSACTION_READ_COMMITTED;
+                        if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                        if ("equals".equals(name)) return proxy == args[0];
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+            }
+        });
+        return new BeeDataSource(config);
+    }
+
+    public void testRegister() throws Exception {
+        PoolGroup group = new PoolGroup("group", 3);
+        FastConnectionPool pool1 = new FastConnectionPool();
+        register(group, pool1, 2);
+        register(group, pool1, 2);//registered
+        try {
+            register(group, new FastConnectionPool(), 2);
+            TestUtil.assertError("Sum of min sizes over group max size");
+        } catch (BeeDataSourceConfigException e) {
+            //expected
+        }
+        if (group.getMemberSize() != 1) TestUtil.assertError("Member size expect:%s,actual:%s", 1, group.getMemberSize());
+        if (tryAcquire(group, new FastConnectionPool())) TestUtil.assertError("Not registered pool acquired");
+    }
+
+    public void testReservedSize() throws Exception {
+        PoolGroup group = new PoolGroup("group", 4);
+        FastConnectionPool pool1 = new FastConnectionPool();
+        FastConnectionPool pool2 = new FastConnectionPool();
+        register(group, pool1, 0);
+        register(group, pool2, 2);
+
+        //reserved size of pool2 is not used by pool1
+        if (!tryAcquire(group, pool1) || !tryAcquire(group, pool1)) TestUtil.assertError("Unreserved size not acquired");
+        if (tryAcquire(group, pool1)) TestUtil.assertError("Reserved size of other member acquired");
+
+        //reserved size is always available
+        if (!tryAcquire(group, pool2) || !tryAcquire(group, pool2)) TestUtil.assertError("Reserved size not acquired");
+        if (tryAcquire(group, pool2)) TestUtil.assertError("Acquired over group max size");
+        if (group.getTotalSize() != 4) TestUtil.assertError("Total size expect:%s,actual:%s", 4, group.getTotalSize());
+
+        //released one below min size is reserved again
+        release(group, pool2);
+        if (tryAcquire(group, pool1)) TestUtil.assertError("Released reserved size acquired by other member");
+        if (!tryAcquire(group, pool2)) TestUtil.assertError("Released reserved size not acquired again");
+
+        //released one over min size is shared
+        release(group, pool1);
+        if (!tryAcquire(group, pool2)) TestUtil.assertError("Released shared size not acquired by other member");
+        if (group.getTotalSize() != 4) TestUtil.assertError("Total size expect:%s,actual:%s", 4, group.getTotalSize());
+    }
+
+    public void testReleaseAndUnregister() throws Exception {
+        PoolGroup group = new PoolGroup("group", 2);
+        FastConnectionPool pool1 = new FastConnectionPool();
+        FastConnectionPool pool2 = new FastConnectionPool();
+        register(group, pool1, 1);
+        register(group, pool2, 1);
+
+        release(group, pool1);//nothing acquired,not counted
+        if (group.getTotalSize() != 0) TestUtil.assertError("Total size expect:%s,actual:%s", 0, group.getTotalSize());
+        tryAcquire(group, pool1);
+        tryAcquire(group, pool2);
+        if (tryAcquire(group, pool1)) TestUtil.assertError("Acquired over group max size");
+
+        unregister(group, pool2);
+        if (group.getTotalSize() != 1) TestUtil.assertError("Total size expect:%s,actual:%s", 1, group.getTotalSize());
+        if (!tryAcquire(group, pool1)) TestUtil.assertError("Size of unregistered member not released");
+    }
+
+    public void testReclaimIdle() throws Exception {
+        PoolGroup group = new PoolGroup("group", 3);
+        BeeDataSource ds1 = createDataSource(group, 1);
+        BeeDataSource ds2 = createDataSource(group, 1);
+        try {
+            Connection con1 = ds1.getConnection();
+            Connection con2 = ds1.getConnection();//over reserved size of ds1
+            con2.close();//idle in ds1
+            if (group.getTotalSize() != 3) TestUtil.assertError("Total size expect:%s,actual:%s", 3, group.getTotalSize());
+
+            Connection con3 = ds2.getConnection();//reserved one created at init
+            Connection con4 = ds2.getConnection();//group is full,idle one of ds1 is closed
+            if (ds1.getPoolMonitorVo().getIdleSize() != 0) TestUtil.assertError("Idle connection not reclaimed from other member");
+            if (group.getTotalSize() != 3) TestUtil.assertError("Total size expect:%s,actual:%s", 3, group.getTotalSize());
+            con1.close();
+            con3.close();
+            con4.close();
+        } finally {
+            ds1.close();
+            ds2.close();
+        }
+        if (group.getTotalSize() != 0) TestUtil.assertError("Total size after closed expect:%s,actual:%s", 0, group.getTotalSize());
+    }
+}
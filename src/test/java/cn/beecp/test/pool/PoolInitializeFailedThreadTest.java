@@ -0,0 +1,64 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+/**
+ * Pool threads stopped after failure of initial connection creation,no database required
+ */
+public class PoolInitializeFailedThreadTest extends TestCase {
+
+    private static BeeDataSourceConfig createConfig(String poolName) {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setDown(true);
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setPoolName(poolName);
+        config.setInitialSize(1);
+        config.setConnectionFactory(factory);
+        return config;
+    }
+
+    private static void initFailed(BeeDataSourceConfig config) {
+        try {
+            new BeeDataSource(config);
+            TestUtil.assertError("A initializerError need be thrown,but not");
+        } catch (RuntimeException e) {
+        }
+    }
+
+    private static boolean existThread(String name) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            boolean found = false;
+            for (Thread thread : Thread.getAllStackTraces().keySet())
+                if (thread.isAlive() && name.equals(thread.getName())) found = true;
+            if (!found) return false;
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    public void testSlowSqlLogThread() throws Exception {
+        BeeDataSourceConfig config = createConfig("initFailedSlowSqlPool");
+        config.setSlowSqlThreshold(100);
+        initFailed(config);
+        if (existThread("initFailedSlowSqlPool-slowSqlLog")) TestUtil.assertError("Slow sql log thread alive after pool initialization failed");
+    }
+}
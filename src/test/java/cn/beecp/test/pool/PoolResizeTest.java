@@ -0,0 +1,210 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJmxBean;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Runtime change of max size and semaphore size with in-memory connections
+ */
+public class PoolResizeTest extends TestCase {
+
+    private static BeeDataSourceConfig createConfig(int maxActive, int semaphoreSize, long maxWait) {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(maxActive);
+        config.setBorrowSemaphoreSize(semaphoreSize);
+        config.setMaxWait(maxWait);
+        config.setConnectionFactory(new StubConnectionFactory());
+        return config;
+    }
+
+    private static ConnectionPoolJmxBean getPool(BeeDataSource ds) throws Exception {
+        return (ConnectionPoolJmxBean) TestUtil.getFieldValue(ds, "pool");
+    }
+
+    private static boolean failToBorrow(BeeDataSource ds) {
+        try {
+            ds.getConnection().close();
+            return false;
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void waitUntil(ConnectionPoolJmxBean pool, int acquiredSize, int waitingSize) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (pool.getSemaphoreAcquiredSize() == acquiredSize && pool.getSemaphoreWaitingSize() == waitingSize) return;
+            Thread.sleep(20);
+        }
+        TestUtil.assertError("Semaphore acquired and waiting size expect:%s,actual:%s", acquiredSize + "," + waitingSize,
+                pool.getSemaphoreAcquiredSize() + "," + pool.getSemaphoreWaitingSize());
+    }
+
+    public void testMaxActiveGrow() throws Exception {
+        BeeDataSource ds = new BeeDataSource(createConfig(1, 1, 100));
+        try {
+            Connection con = ds.getConnection();
+            try {
+                if (!failToBorrow(ds)) TestUtil.assertError("Connection borrowed from full pool");
+                getPool(ds).setMaxActive(2);
+                if (failToBorrow(ds)) TestUtil.assertError("Connection not borrowed after max size grown");
+            } finally {
+                con.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testMaxActiveShrinkInUse() throws Exception {
+        BeeDataSource ds = new BeeDataSource(createConfig(2, 2, 100));
+        try {
+            ConnectionPoolJmxBean pool = getPool(ds);
+            Connection con1 = ds.getConnection();
+            Connection con2 = ds.getConnection();
+            try {
+                pool.setMaxActive(1);
+                if (pool.getConnTotalSize() != 2) TestUtil.assertError("Using connections closed by shrink");
+            } finally {
+                con1.close();
+                con2.close();
+            }
+            if (pool.getConnTotalSize() != 1)
+                TestUtil.assertError("Total size after returned expect:%s,actual:%s", 1, pool.getConnTotalSize());
+
+            Connection con = ds.getConnection();
+            try {
+                if (!failToBorrow(ds)) TestUtil.assertError("Connection borrowed over shrunk max size");
+            } finally {
+                con.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testSemaphoreGrow() throws Exception {
+        BeeDataSource ds = new BeeDataSource(createConfig(1, 1, 3000));
+        try {
+            ConnectionPoolJmxBean pool = getPool(ds);
+            BorrowThread[] borrowers = {new BorrowThread(ds), new BorrowThread(ds)};
+            Connection con = ds.getConnection();
+            try {
+                borrowers[0].start();
+                waitUntil(pool, 1, 0);//the only permit held by waiter of transferred connection
+                pool.setBorrowSemaphoreSize(2);
+                borrowers[1].start();
+                waitUntil(pool, 2, 0);//new permit granted
+            } finally {
+                con.close();
+            }
+            for (BorrowThread borrower : borrowers) {
+                borrower.join();
+                if (borrower.failure != null) TestUtil.assertError("Borrower failed:" + borrower.failure);
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testSemaphoreShrinkWhilePermitsHeld() throws Exception {
+        BeeDataSource ds = new BeeDataSource(createConfig(1, 2, 3000));
+        try {
+            ConnectionPoolJmxBean pool = getPool(ds);
+            BorrowThread[] borrowers = {new BorrowThread(ds), new BorrowThread(ds), new BorrowThread(ds)};
+            Connection con = ds.getConnection();
+            try {
+                borrowers[0].start();
+                borrowers[1].start();
+                waitUntil(pool, 2, 0);//two permits held by waiters of transferred connection
+
+                pool.setBorrowSemaphoreSize(1);
+                if (pool.getSemaphoreAcquiredSize() != 2) TestUtil.assertError("Permit holders affected by shrink");
+                borrowers[2].start();
+                waitUntil(pool, 2, 1);//no permit until two holders released
+            } finally {
+                con.close();
+            }
+            for (BorrowThread borrower : borrowers) {
+                borrower.join();
+                if (borrower.failure != null) TestUtil.assertError("Borrower failed:" + borrower.failure);
+            }
+            if (pool.getSemaphoreAcquiredSize() != 0)
+                TestUtil.assertError("Semaphore acquired size expect:%s,actual:%s", 0, pool.getSemaphoreAcquiredSize());
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testAdaptiveSemaphoreResize() throws Exception {
+        BeeDataSourceConfig config = createConfig(4, 2, 100);
+        config.setAdaptiveBorrowSemaphore(true);
+        BeeDataSource ds = new BeeDataSource(config);
+        try {
+            getPool(ds).setBorrowSemaphoreSize(3);
+            TestUtil.assertError("Semaphore size of adaptive semaphore changed");
+        } catch (IllegalStateException e) {
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testRawPoolResize() throws Exception {
+        BeeDataSourceConfig config = createConfig(2, 2, 100);
+        config.setPoolImplementClassName("cn.beecp.pool.RawConnectionPool");
+        BeeDataSource ds = new BeeDataSource(config);
+        try {
+            ConnectionPoolJmxBean pool = getPool(ds);
+            try {
+                pool.setMaxActive(3);
+                TestUtil.assertError("Max size of raw pool changed");
+            } catch (UnsupportedOperationException e) {
+            }
+            try {
+                pool.setBorrowSemaphoreSize(3);
+                TestUtil.assertError("Semaphore size of raw pool changed");
+            } catch (UnsupportedOperationException e) {
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    private static final class BorrowThread extends Thread {
+        private final BeeDataSource ds;
+        private volatile SQLException failure;
+
+        BorrowThread(BeeDataSource ds) {
+            this.ds = ds;
+        }
+
+        public void run() {
+            try {
+                ds.getConnection().close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.pool.PoolStaticCenter;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+/**
+ * Read-only sql check used to skip rollback in read-only transaction,no database required
+ */
+public class ReadOnlySqlTest extends TestCase {
+    private static final Object[][] SqlCases = {
+            {"SELECT * FROM t", true},
+            {"  select *\n from t where id=?", true},
+            {"\t\nSeLeCt 1", true},
+            {"(SELECT a FROM t1) UNION (SELECT a FROM t2)", true},
+            {"/* comment */ SELECT * FROM t", true},
+            {"-- comment\nSELECT * FROM t", true},
+            {"/* a */ -- b\n /* c */SELECT * FROM t", true},
+            {"SELECT * FROM t;", true},
+            {"SHOW TABLES", true},
+            {"explain select * from t", true},
+            {"DESC t", true},
+            {"describe t", true},
+            {"SELECT * FROM t WHERE id=1 FOR UPDATE", false},
+            {"select * from t for share", false},
+            {"SELECT * FROM t LOCK IN SHARE MODE", false},
+            {"SELECT a INTO @v FROM t", false},
+            {"SELECT * INTO t2 FROM t", false},
+            {"WITH x AS (SELECT 1) INSERT INTO t SELECT * FROM x", false},
+            {"WITH x AS (SELECT 1) SELECT * FROM x", false},//unknown keyword,treated as write
+            {"CALL p(1)", false},
+            {"{call p(?)}", false},
+            {"INSERT INTO t VALUES(1)", false},
+            {"update t set a=1", false},
+            {"DELETE FROM t", false},
+            {"SELECT 1; DELETE FROM t", false},
+            {"EXPLAIN ANALYZE DELETE FROM t", false},
+            {"-- comment without end SELECT 1", false},
+            {"/* comment without end SELECT 1", false},
+            {"", false},
+            {null, false},
+    };
+
+    public void testReadOnlySql() {
+        for (Object[] sqlCase : SqlCases) {
+            Object readOnly = TestUtil.invokeMethod(PoolStaticCenter.class, "isReadOnlySql", new Class<?>[]{String.class}, sqlCase[0]);
+            if (!sqlCase[1].equals(readOnly))
+                TestUtil.assertError("Read-only of sql(" + sqlCase[0] + ")expect:%s,actual:%s", sqlCase[1], readOnly);
+        }
+    }
+}
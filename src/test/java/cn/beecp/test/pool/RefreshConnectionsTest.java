@@ -0,0 +1,115 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJmxBean;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling refresh of pooled connections with in-memory connections
+ */
+public class RefreshConnectionsTest extends TestCase {
+
+    private static BeeDataSource createDataSource(StubConnectionFactory factory, int size, long maxWait) {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setInitialSize(size);
+        config.setMaxActive(size);
+        config.setMaxWait(maxWait);
+        config.setDelayTimeForNextRefresh(10);
+        config.setConnectionFactory(factory);
+        return new BeeDataSource(config);
+    }
+
+    private static ConnectionPoolJmxBean getPool(BeeDataSource ds) {
+        return (ConnectionPoolJmxBean) TestUtil.getFieldValue(ds, "pool");
+    }
+
+    public void testRefreshIdle() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, 2, 1000);
+        try {
+            int count = ds.refreshAllConnections().get(5, TimeUnit.SECONDS);
+            if (count != 2) TestUtil.assertError("Replaced count expect:%s,actual:%s", 2, count);
+            if (factory.getCreatedCount() != 4) TestUtil.assertError("Created count expect:%s,actual:%s", 4, factory.getCreatedCount());
+            if (factory.getClosedCount() != 2) TestUtil.assertError("Closed count expect:%s,actual:%s", 2, factory.getClosedCount());
+            if (getPool(ds).getConnTotalSize() != 2)
+                TestUtil.assertError("Total size expect:%s,actual:%s", 2, getPool(ds).getConnTotalSize());
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testRefreshUsingOnReturn() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, 1, 3000);
+        try {
+            Future<Integer> future;
+            Connection con = ds.getConnection();
+            try {
+                future = ds.refreshAllConnections();
+                Thread.sleep(100);
+                if (future.isDone()) TestUtil.assertError("Using connection replaced before return");
+                if (factory.getClosedCount() != 0) TestUtil.assertError("Using connection closed by refresh");
+            } finally {
+                con.close();//closed in recycle and replaced
+            }
+            int count = future.get(5, TimeUnit.SECONDS);
+            if (count != 1) TestUtil.assertError("Replaced count expect:%s,actual:%s", 1, count);
+            if (factory.getClosedCount() != 1) TestUtil.assertError("Closed count expect:%s,actual:%s", 1, factory.getClosedCount());
+
+            con = ds.getConnection();//new one
+            try {
+                if (factory.getCreatedCount() != 2) TestUtil.assertError("Created count expect:%s,actual:%s", 2, factory.getCreatedCount());
+            } finally {
+                con.close();
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testRetireUsingAfterMaxWait() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, 1, 100);
+        try {
+            ConnectionPoolJmxBean pool = getPool(ds);
+            Connection con = ds.getConnection();
+            try {
+                int count = ds.refreshAllConnections().get(5, TimeUnit.SECONDS);
+                if (count != 0) TestUtil.assertError("Replaced count expect:%s,actual:%s", 0, count);
+                if (factory.getClosedCount() != 1) TestUtil.assertError("Unused new connection not closed");
+                if (pool.getConnTotalSize() != 1) TestUtil.assertError("Retired connection removed in use");
+            } finally {
+                con.close();//removed on return
+            }
+            if (pool.getConnTotalSize() != 0) TestUtil.assertError("Total size expect:%s,actual:%s", 0, pool.getConnTotalSize());
+            if (factory.getClosedCount() != 2) TestUtil.assertError("Closed count expect:%s,actual:%s", 2, factory.getClosedCount());
+
+            con = ds.getConnection();//pool creates a new one
+            con.close();
+        } finally {
+            ds.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * JDBC4.3 'beginRequest/endRequest' calls on borrow and return with in-memory connection,
+ * which implements them by proxy,the test is skipped on Java 8 or earlier
+ */
+public class RequestBoundaryTest extends TestCase {
+
+    private static boolean supportRequestBoundary() {
+        try {
+            Connection.class.getMethod("beginRequest");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static BeeDataSource createDataSource(StubConnectionFactory factory, boolean enable, boolean skipClearWarnings) {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(1);
+        config.setEnableRequestBoundary(enable);
+        config.setSkipClearWarningsOnRequestEnd(skipClearWarnings);
+        config.setConnectionFactory(factory);
+        return new BeeDataSource(config);
+    }
+
+    //borrow a connection and make readOnly dirty,return calls on raw connection
+    private static List<String> borrowAndReturn(BeeDataSource ds, StubConnectionFactory factory) throws Exception {
+        factory.clearCalls();
+        Connection con = ds.getConnection();
+        try {
+            con.setReadOnly(true);
+        } finally {
+            con.close();
+        }
+        return factory.getCalls();
+    }
+
+    public void testBoundaryCalled() throws Exception {
+        if (!supportRequestBoundary()) return;
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, true, false);
+        try {
+            List<String> calls = borrowAndReturn(ds, factory);
+            if (calls.indexOf("con.beginRequest") != 0) TestUtil.assertError("beginRequest not called on borrow,calls expect:%s,actual:%s", "[con.beginRequest...]", calls);
+            if (calls.indexOf("con.endRequest") != calls.size() - 1) TestUtil.assertError("endRequest not called at last on return,calls expect:%s,actual:%s", "[...con.endRequest]", calls);
+            if (!calls.contains("con.setReadOnly(false)") || !calls.contains("con.clearWarnings"))
+                TestUtil.assertError("Connection not reset before endRequest,calls expect:%s,actual:%s", "[...con.setReadOnly(false),con.clearWarnings,con.endRequest]", calls);
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testSkipClearWarningsOnRequestEnd() throws Exception {
+        if (!supportRequestBoundary()) return;
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, true, true);
+        try {
+            List<String> calls = borrowAndReturn(ds, factory);
+            if (calls.contains("con.clearWarnings")) TestUtil.assertError("Warnings cleared before endRequest");
+            if (!calls.contains("con.setReadOnly(false)")) TestUtil.assertError("ReadOnly not reset before endRequest");
+            if (!calls.contains("con.endRequest")) TestUtil.assertError("endRequest not called on return");
+        } finally {
+            ds.close();
+        }
+    }
+
+    public void testBoundaryDisabled() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        BeeDataSource ds = createDataSource(factory, false, false);
+        try {
+            List<String> calls = borrowAndReturn(ds, factory);
+            if (calls.contains("con.beginRequest") || calls.contains("con.endRequest"))
+                TestUtil.assertError("Request boundary called when disabled,calls expect:%s,actual:%s", "[con.setReadOnly(true)...]", calls);
+        } finally {
+            ds.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.RawConnectionFactory;
+import cn.beecp.RequestDeadline;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request deadline test with in-memory connection,borrow wait is consumed from deadline
+ */
+public class RequestDeadlineTest extends TestCase {
+    private final AtomicInteger queryTimeout = new AtomicInteger(-1);
+    private BeeDataSource ds;
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(1);
+        config.setMaxWait(10000);
+        config.setConnectionFactory(new RawConnectionFactory() {
+            public Connection create() {
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("isValid".equals(name)) return Boolean.TRUE;
+                        if ("getAutoCommit".equals(name)) return Boolean.TRUE;
+                        if ("getTransactionIsolation".equals(name)) return Connection.TRANSACTION_READ_COMMITTED;
+                        if ("createStatement".equals(name)) return createStatement();
+                        if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                        if ("equals".equals(name)) return proxy == args[0];
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+            }
+        });
+        ds = new BeeDataSource(config);
+    }
+
+    private Statement createStatement() {
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("setQueryTimeout".equals(method.getName())) queryTimeout.set((Integer) args[0]);
+                if ("hashCode".equals(method.getName())) return System.identityHashCode(proxy);
+                if ("equals".equals(method.getName())) return proxy == args[0];
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    public void tearDown() throws Throwable {
+        RequestDeadline.clear();
+        ds.close();
+    }
+
+    public void testTimeoutShrinkAfterBorrowWait() throws Exception {
+        final Connection holder = ds.getConnection();
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(2000L);
+                    holder.close();
+                } catch (Exception e) {
+                }
+            }
+        }.start();
+
+        RequestDeadline.set(5, TimeUnit.SECONDS);
+        Connection con = ds.getConnection();//wait about 2 seconds
+        try {
+            Statement st = con.createStatement();
+            st.execute("select 1");
+            st.close();
+        } finally {
+            con.close();
+            RequestDeadline.clear();
+        }
+        if (queryTimeout.get() <= 0 || queryTimeout.get() > 3)
+            TestUtil.assertError("Query timeout expect value:%s,actual value:%s", "1..3", queryTimeout.get());
+    }
+
+    public void testHugeTimeoutNotExpired() throws Exception {
+        RequestDeadline.set(Long.MAX_VALUE, TimeUnit.DAYS);
+        try {
+            if (RequestDeadline.getRemainingNanos() <= 0L)
+                TestUtil.assertError("Deadline of huge timeout expired");
+            ds.getConnection().close();
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+}
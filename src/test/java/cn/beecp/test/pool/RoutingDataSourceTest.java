@@ -0,0 +1,154 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeRoutingDataSource;
+import cn.beecp.RawConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing data source test with in-memory connections,replica ejection and lazy routing
+ */
+public class RoutingDataSourceTest extends TestCase {
+    private final AtomicInteger replicaCreateCount = new AtomicInteger(0);
+    private volatile boolean replicaDown;
+    private BeeRoutingDataSource ds;
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    private static Connection createConnection() {
+        return (Connection) Proxy.newProxyInstance(RoutingDataSourceTest.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+            private boolean closed;
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("isValid".equals(name)) return Boolean.TRUE;
+                if ("getAutoCommit".equals(name)) return Boolean.TRUE;
+                if ("getTransactionIsolation".equals(name)) return Connection.TRANSACTION_READ_COMMITTED;
+                if ("close".equals(name)) closed = true;
+                if ("isClosed".equals(name)) return closed;
+                if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                if ("equals".equals(name)) return proxy == args[0];
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig primaryConfig = new BeeDataSourceConfig();
+        primaryConfig.setPoolName("primary");
+        primaryConfig.setMaxActive(2);
+        primaryConfig.setConnectionFactory(new RawConnectionFactory() {
+            public Connection create() {
+                return createConnection();
+            }
+        });
+
+        BeeDataSourceConfig replicaConfig = new BeeDataSourceConfig();
+        replicaConfig.setPoolName("replica");
+        replicaConfig.setMaxActive(2);
+        replicaConfig.setConnectionFactory(new RawConnectionFactory() {
+            public Connection create() throws SQLException {
+                replicaCreateCount.incrementAndGet();
+                if (replicaDown) throw new SQLException("Replica is down");
+                return createConnection();
+            }
+        });
+
+        ds = new BeeRoutingDataSource(primaryConfig, replicaConfig);
+        ds.setReplicaMaxCreateFailures(2);
+        ds.setReplicaEjectTime(300);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    private static int usingSize(BeeDataSource dataSource) throws SQLException {
+        return dataSource.getPoolMonitorVo().getUsingSize();
+    }
+
+    public void testReplicaEjection() throws Exception {
+        BeeDataSource replica = ds.getReplicas()[0];
+        replica.clearAllConnections(true);
+        replicaDown = true;
+
+        for (int i = 0; i < 2; i++) {//fall back to primary
+            Connection con = ds.getReadOnlyConnection();
+            if (usingSize(ds.getPrimary()) != 1) TestUtil.assertError("Read-only connection not borrowed from primary");
+            con.close();
+        }
+        if (!ds.isReplicaEjected(replica)) TestUtil.assertError("Replica not ejected after continuous creation failures");
+
+        int createCount = replicaCreateCount.get();
+        ds.getReadOnlyConnection().close();
+        if (replicaCreateCount.get() != createCount) TestUtil.assertError("Ejected replica was tried");
+
+        replicaDown = false;
+        Thread.sleep(400);//eject time elapsed
+        if (ds.isReplicaEjected(replica)) TestUtil.assertError("Replica not readmitted after eject time");
+        Connection con = ds.getReadOnlyConnection();
+        if (usingSize(replica) != 1) TestUtil.assertError("Read-only connection not borrowed from readmitted replica");
+        con.close();
+    }
+
+    public void testLazyConnection() throws Exception {
+        ds.setLazyRouting(true);
+        BeeDataSource replica = ds.getReplicas()[0];
+
+        Connection con = ds.getConnection();
+        con.setReadOnly(true);
+        if (!con.isReadOnly()) TestUtil.assertError("Read-only not kept before first use");
+        if (usingSize(ds.getPrimary()) != 0 || usingSize(replica) != 0)
+            TestUtil.assertError("Connection borrowed before first use");
+        con.getAutoCommit();//first use
+        if (usingSize(replica) != 1) TestUtil.assertError("Read-only lazy connection not routed to replica");
+        con.close();
+        if (usingSize(replica) != 0) TestUtil.assertError("Target connection not returned on close");
+
+        con = ds.getConnection();
+        con.getAutoCommit();
+        if (usingSize(ds.getPrimary()) != 1) TestUtil.assertError("Lazy connection not routed to primary");
+        con.close();
+
+        con = ds.getConnection();
+        con.close();//closed before first use
+        if (!con.isClosed()) TestUtil.assertError("Unused lazy connection not closed");
+        try {
+            con.getAutoCommit();
+            TestUtil.assertError("Closed lazy connection can be used");
+        } catch (SQLException e) {
+            //expected
+        }
+        if (usingSize(ds.getPrimary()) != 0 || usingSize(replica) != 0)
+            TestUtil.assertError("Connection borrowed by closed lazy connection");
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Session state mirror of autoCommit,isolation and readOnly with in-memory connection
+ */
+public class SessionStateMirrorTest extends TestCase {
+    private final StubConnectionFactory factory = new StubConnectionFactory();
+    private BeeDataSource ds;
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(1);
+        config.setMirrorSessionState(true);
+        config.setConnectionFactory(factory);
+        ds = new BeeDataSource(config);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    public void testSameValueSkipped() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            factory.clearCalls();
+            con.setAutoCommit(true);
+            con.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            con.setReadOnly(false);
+            if (!con.getAutoCommit()) TestUtil.assertError("AutoCommit expect:%s,actual:%s", true, false);
+            if (con.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED)
+                TestUtil.assertError("Isolation expect:%s,actual:%s", Connection.TRANSACTION_READ_COMMITTED, con.getTransactionIsolation());
+            if (con.isReadOnly()) TestUtil.assertError("ReadOnly expect:%s,actual:%s", false, true);
+            if (!factory.getCalls().isEmpty()) TestUtil.assertError("Raw calls expect:%s,actual:%s", "[]", factory.getCalls());
+        } finally {
+            con.close();
+        }
+    }
+
+    public void testChangedValueMirrored() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            factory.clearCalls();
+            con.setAutoCommit(false);
+            con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            con.setReadOnly(true);
+            String calls = "[con.setAutoCommit(false), con.setTransactionIsolation(8), con.setReadOnly(true)]";
+            if (!calls.equals(factory.getCalls().toString()))
+                TestUtil.assertError("Raw calls expect:%s,actual:%s", calls, factory.getCalls());
+
+            factory.clearCalls();
+            if (con.getAutoCommit()) TestUtil.assertError("AutoCommit expect:%s,actual:%s", false, true);
+            if (con.getTransactionIsolation() != Connection.TRANSACTION_SERIALIZABLE)
+                TestUtil.assertError("Isolation expect:%s,actual:%s", Connection.TRANSACTION_SERIALIZABLE, con.getTransactionIsolation());
+            if (!con.isReadOnly()) TestUtil.assertError("ReadOnly expect:%s,actual:%s", true, false);
+            if (!factory.getCalls().isEmpty()) TestUtil.assertError("Raw calls expect:%s,actual:%s", "[]", factory.getCalls());
+        } finally {
+            con.close();
+        }
+
+        con = ds.getConnection();//mirror and raw reset on return
+        try {
+            if (!con.getAutoCommit() || con.isReadOnly() || con.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED)
+                TestUtil.assertError("Mirror not reset on return");
+            factory.clearCalls();
+            con.setAutoCommit(false);//raw was reset,so not skipped
+            if (!factory.getCalls().contains("con.setAutoCommit(false)")) TestUtil.assertError("Setter skipped after reset");
+        } finally {
+            con.close();
+        }
+    }
+
+    public void testClosedProxy() throws Exception {
+        Connection con = ds.getConnection();
+        con.close();
+        try {
+            con.getAutoCommit();
+            TestUtil.assertError("Mirror answered on closed connection");
+        } catch (SQLException e) {
+        }
+        try {
+            con.setReadOnly(false);//same value as mirror
+            TestUtil.assertError("Setter skipped on closed connection");
+        } catch (SQLException e) {
+        }
+    }
+}
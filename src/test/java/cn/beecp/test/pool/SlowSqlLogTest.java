@@ -0,0 +1,113 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.StubConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Types;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameter capture of callable statement and slow sql log writing on close,no database required
+ */
+public class SlowSqlLogTest extends TestCase {
+    private static final String AppenderClassName = "cn.beecp.pool.SlowSqlLogAppender";
+    private BeeDataSource ds;
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setSlowSqlThreshold(1000);
+        config.setSlowSqlLogParameters(true);
+        config.setConnectionFactory(new StubConnectionFactory());
+        ds = new BeeDataSource(config);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    public void testCallableParameters() throws Exception {
+        Connection con = ds.getConnection();
+        try {
+            CallableStatement cs = con.prepareCall("{call p(?,?,?)}");
+            cs.setInt(1, 5);
+            cs.setString("name", "x");
+            cs.setNull("empty", Types.VARCHAR);
+            Object[] parameters = (Object[]) TestUtil.invokeMethod(cs, "copyCapturedParameters", new Class<?>[0]);
+            String text = Arrays.toString(parameters);
+            if (!"[5, name=x, empty=null]".equals(text))
+                TestUtil.assertError("Captured parameters expect:%s,actual:%s", "[5, name=x, empty=null]", text);
+
+            cs.clearParameters();
+            parameters = (Object[]) TestUtil.invokeMethod(cs, "copyCapturedParameters", new Class<?>[0]);
+            if (parameters != null && parameters.length > 0)
+                TestUtil.assertError("Captured parameters expect:%s,actual:%s", "[]", Arrays.toString(parameters));
+        } finally {
+            con.close();
+        }
+    }
+
+    public void testRecordsWrittenOnClose() throws Exception {
+        CaptureAppender appender = new CaptureAppender();
+        appender.start();
+        Logger logger = (Logger) LogManager.getLogger("cn.beecp.SlowSqlLog");
+        logger.addAppender(appender);
+        try {
+            Object logAppender = TestUtil.createObject(AppenderClassName, new Class<?>[]{String.class, int.class}, "slowSqlPool", 10);
+            Class<?>[] appendTypes = {String.class, Object[].class, long.class, Throwable.class};
+            for (int i = 0; i < 3; i++)
+                TestUtil.invokeMethod(logAppender, "append", appendTypes, "{call p(?,?)}", new Object[]{i, new SimpleImmutableEntry<String, Object>("name", "x")}, 2000000000L, null);
+
+            TestUtil.invokeMethod(logAppender, "close", new Class<?>[0]);
+            ((Thread) logAppender).run();//exit at once after writing queued records
+            if (appender.messages.size() != 3)
+                TestUtil.assertError("Written records expect:%s,actual:%s", 3, appender.messages.size());
+            String message = appender.messages.get(2);
+            if (!message.contains("parameters:[2,name=x]"))
+                TestUtil.assertError("Slow sql log expect:%s,actual:%s", "parameters:[2,name=x]", message);
+        } finally {
+            logger.removeAppender(appender);
+            appender.stop();
+        }
+    }
+
+    private static final class CaptureAppender extends AbstractAppender {
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        CaptureAppender() {
+            super("slowSqlCapture", null, null, true, Property.EMPTY_ARRAY);
+        }
+
+        public void append(LogEvent event) {
+            messages.add(event.getMessage().getFormattedMessage());
+        }
+    }
+}
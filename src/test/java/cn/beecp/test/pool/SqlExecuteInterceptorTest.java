@@ -0,0 +1,89 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.SqlExecuteInterceptor;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SqlExecuteInterceptorTest extends TestCase {
+    private final List<String> sqlList = new ArrayList<String>();
+    private final List<Throwable> causeList = new ArrayList<Throwable>();
+    private BeeDataSource ds;
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setJdbcUrl(Config.JDBC_URL);
+        config.setDriverClassName(Config.JDBC_DRIVER);
+        config.setUsername(Config.JDBC_USER);
+        config.setPassword(Config.JDBC_PASSWORD);
+        config.setSqlExecuteInterceptor(new SqlExecuteInterceptor() {
+            public void afterExecute(String poolName, String sql, long elapsedNanos, Object result, Throwable cause) {
+                sqlList.add(sql);
+                causeList.add(cause);
+            }
+        });
+        ds = new BeeDataSource(config);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    public void test() throws InterruptedException, Exception {
+        Connection con = null;
+        Statement st = null;
+        PreparedStatement ps = null;
+        try {
+            con = ds.getConnection();
+            st = con.createStatement();
+            st.executeQuery("select count(*) from " + Config.TEST_TABLE);
+            try {
+                st.execute("select * from BEECP_NOT_EXIST_TABLE");
+            } catch (SQLException e) {
+            }
+
+            String psSql = "select * from " + Config.TEST_TABLE + " where TEST_ID=?";
+            ps = con.prepareStatement(psSql);
+            ps.setString(1, "1");
+            ps.executeQuery();
+
+            if (sqlList.size() != 3)
+                TestUtil.assertError("interceptor call size expect value:%s,actual value:%s", 3, sqlList.size());
+            if (causeList.get(0) != null || causeList.get(1) == null)
+                TestUtil.assertError("interceptor execution result error");
+            if (!psSql.equals(sqlList.get(2)))
+                TestUtil.assertError("interceptor sql expect value:%s,actual value:%s", psSql, sqlList.get(2));
+        } finally {
+            if (st != null)
+                TestUtil.oclose(st);
+            if (ps != null)
+                TestUtil.oclose(ps);
+            if (con != null)
+                TestUtil.oclose(con);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.ExceptionClassifier;
+import cn.beecp.pool.SqlStateExceptionClassifier;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+
+/**
+ * Fatal exception classification by type,SQLState,vendor code and exception chain
+ */
+public class SqlStateExceptionClassifierTest extends TestCase {
+    private final ExceptionClassifier classifier = new SqlStateExceptionClassifier();
+    private final ExceptionClassifier mysqlClassifier = new SqlStateExceptionClassifier("MySQL");
+    private final ExceptionClassifier oracleClassifier = new SqlStateExceptionClassifier("Oracle");
+
+    public void testExceptionType() {
+        if (!classifier.isFatal(new SQLRecoverableException("recoverable")))
+            TestUtil.assertError("Recoverable exception not fatal");
+        if (!classifier.isFatal(new SQLNonTransientConnectionException("connection")))
+            TestUtil.assertError("Non-transient connection exception not fatal");
+    }
+
+    public void testSqlState() {
+        if (!classifier.isFatal(new SQLException("link failure", "08S01")))
+            TestUtil.assertError("SQLState 08S01 not fatal");
+        if (!classifier.isFatal(new SQLException("admin shutdown", "57P01")))
+            TestUtil.assertError("SQLState 57P01 not fatal");
+        if (classifier.isFatal(new SQLException("syntax error", "42000")))
+            TestUtil.assertError("SQLState 42000 is fatal");
+        if (classifier.isFatal(new SQLException("no state")))
+            TestUtil.assertError("Exception without SQLState is fatal");
+    }
+
+    public void testVendorCode() {
+        SQLException lostConnection = new SQLException("lost connection", "HY000", 2013);
+        if (!mysqlClassifier.isFatal(lostConnection)) TestUtil.assertError("MySQL code 2013 not fatal");
+        if (classifier.isFatal(lostConnection)) TestUtil.assertError("Vendor code checked for unknown database");
+        if (oracleClassifier.isFatal(lostConnection)) TestUtil.assertError("MySQL code checked for Oracle");
+
+        SQLException closedConnection = new SQLException("closed connection", "99999", 17008);
+        if (!oracleClassifier.isFatal(closedConnection)) TestUtil.assertError("Oracle code 17008 not fatal");
+        if (mysqlClassifier.isFatal(closedConnection)) TestUtil.assertError("Oracle code checked for MySQL");
+        if (!new SqlStateExceptionClassifier("MariaDB").isFatal(lostConnection))
+            TestUtil.assertError("MariaDB not classified with MySQL codes");
+    }
+
+    public void testExceptionChain() {
+        SQLException e = new SQLException("batch failed", "42000");
+        e.setNextException(new SQLException("link failure", "08006"));
+        if (!classifier.isFatal(e)) TestUtil.assertError("Fatal next exception not found");
+
+        e = new SQLException("wrapped", "HY000", new SQLRecoverableException("io error"));
+        if (!classifier.isFatal(e)) TestUtil.assertError("Fatal cause not found");
+
+        e = new SQLException("wrapped", "HY000", new RuntimeException(new SQLException("link failure", "08S01")));
+        if (!classifier.isFatal(e)) TestUtil.assertError("Fatal cause under non sql exception not found");
+
+        SQLException deepest = new SQLException("link failure", "08S01");
+        for (int i = 0; i < 10; i++)
+            deepest = new SQLException("level" + i, "42000", deepest);
+        if (classifier.isFatal(deepest)) TestUtil.assertError("Exception chain checked over max depth");
+    }
+}
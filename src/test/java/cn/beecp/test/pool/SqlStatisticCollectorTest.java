@@ -0,0 +1,101 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.pool.SqlStatistic;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+/**
+ * Sql normalization and statistic eviction,no database required
+ */
+public class SqlStatisticCollectorTest extends TestCase {
+    private static final String CollectorClassName = "cn.beecp.pool.SqlStatisticCollector";
+    private static final String[][] NormalizeCases = {
+            {"SELECT * FROM t WHERE id=1 AND name='a''b'", "SELECT * FROM t WHERE id=? AND name=?"},
+            {"select * from t1 where id in (1, 2, 3)", "select * from t1 where id in (?)"},
+            {"SELECT * FROM t WHERE id IN (?,?,?)", "SELECT * FROM t WHERE id IN (?)"},
+            {"INSERT INTO t VALUES (1,'a'),(2,'b')", "INSERT INTO t VALUES (?),(?)"},
+            {"/* user=1 */ SELECT  a\n FROM t -- id=2\nWHERE b = 3.5", "SELECT a FROM t WHERE b = ?"},
+            {"SELECT a/*hint*/FROM t", "SELECT a FROM t"},
+            {"SELECT \"col 1\" FROM `t 2` WHERE v = -12e3", "SELECT \"col 1\" FROM `t 2` WHERE v = -?"},
+            {null, "[batch]"},
+    };
+
+    private static Object createCollector(int maxSize) throws Exception {
+        return TestUtil.createObject(CollectorClassName, new Class<?>[]{int.class}, maxSize);
+    }
+
+    private static void add(Object collector, String sql, int times) {
+        for (int i = 0; i < times; i++)
+            TestUtil.invokeMethod(collector, "add", new Class<?>[]{String.class, long.class, Object.class, Throwable.class}, sql, 1L, null, null);
+    }
+
+    private static SqlStatistic[] getStatistics(Object collector) {
+        return (SqlStatistic[]) TestUtil.invokeMethod(collector, "getTopByCount", new Class<?>[]{int.class}, Integer.MAX_VALUE);
+    }
+
+    private static SqlStatistic findStatistic(Object collector, String sql) {
+        for (SqlStatistic statistic : getStatistics(collector))
+            if (statistic.getSql().equals(sql)) return statistic;
+        return null;
+    }
+
+    public void testNormalize() throws Exception {
+        Class<?> collectorClass = Class.forName(CollectorClassName);
+        for (String[] normalizeCase : NormalizeCases) {
+            Object sql = TestUtil.invokeMethod(collectorClass, "normalize", new Class<?>[]{String.class}, normalizeCase[0]);
+            if (!normalizeCase[1].equals(sql)) TestUtil.assertError("Normalized sql expect:%s,actual:%s", normalizeCase[1], sql);
+        }
+    }
+
+    public void testEvictMinCount() throws Exception {
+        Object collector = createCollector(20);//two evicted in one batch
+        for (int i = 1; i <= 20; i++)
+            add(collector, "SELECT c" + i + " FROM t", i);
+        add(collector, "SELECT c21 FROM t", 1);
+
+        SqlStatistic[] statistics = getStatistics(collector);
+        if (statistics.length != 19) TestUtil.assertError("Size after eviction expect:%s,actual:%s", 19, statistics.length);
+        if (findStatistic(collector, "SELECT c1 FROM t") != null || findStatistic(collector, "SELECT c2 FROM t") != null)
+            TestUtil.assertError("Statistics with min count not evicted");
+        SqlStatistic statistic = findStatistic(collector, "SELECT c21 FROM t");
+        if (statistic == null) TestUtil.assertError("New statistic not added after eviction");
+        if (statistic.getCountError() != 2)
+            TestUtil.assertError("Count error of new statistic expect:%s,actual:%s", 2, statistic.getCountError());
+        if (statistic.getCount() != 3) TestUtil.assertError("Count of new statistic expect:%s,actual:%s", 3, statistic.getCount());
+    }
+
+    public void testConcurrentCreateBounded() throws Exception {
+        final Object collector = createCollector(50);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final int threadNo = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 500; j++)
+                        add(collector, "SELECT c" + threadNo + "_" + j + " FROM t", 1);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        int size = getStatistics(collector).length;
+        if (size > 50) TestUtil.assertError("Size over max expect:%s,actual:%s", 50, size);
+    }
+}
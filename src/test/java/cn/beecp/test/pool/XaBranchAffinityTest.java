@@ -0,0 +1,163 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.pool;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.RawConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.xa.RawXaConnectionFactory;
+
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * XA branch affinity test with in-memory connection and XAResource
+ */
+public class XaBranchAffinityTest extends TestCase {
+    private final List<String> xaCalls = new ArrayList<String>();
+    private final AtomicInteger xaConCloseCount = new AtomicInteger(0);
+    private BeeDataSource ds;
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    public void setUp() throws Throwable {
+        BeeDataSourceConfig config = new BeeDataSourceConfig();
+        config.setMaxActive(2);
+        config.setXaBranchAffinity(true);
+        config.setConnectionFactory(new RawConnectionFactory() {
+            public Connection create() {
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    private boolean closed;
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("isValid".equals(name)) return Boolean.TRUE;
+                        if ("getAutoCommit".equals(name)) return Boolean.TRUE;
+                        if ("getTransactionIsolation".equals(name)) return Connection.TRANSACTION_READ_COMMITTED;
+                        if ("close".equals(name)) closed = true;
+                        if ("isClosed".equals(name)) return closed;
+                        if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                        if ("equals".equals(name)) return proxy == args[0];
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+            }
+        });
+        config.setXaConnectionFactory(new RawXaConnectionFactory() {
+            public XAConnection create(final Connection rawCon) {
+                final XAResource resource = (XAResource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{XAResource.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("isSameRM".equals(name)) return proxy == args[0];
+                        if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+                        if ("equals".equals(name)) return proxy == args[0];
+                        xaCalls.add(name);
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+                return (XAConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{XAConnection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getXAResource".equals(method.getName())) return resource;
+                        if ("getConnection".equals(method.getName())) return rawCon;
+                        if ("close".equals(method.getName())) xaConCloseCount.incrementAndGet();
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+            }
+        });
+        ds = new BeeDataSource(config);
+    }
+
+    public void tearDown() throws Throwable {
+        ds.close();
+    }
+
+    public void test() throws Exception {
+        Xid xid = new TestXid(1);
+        XAConnection xaCon1 = ds.getXAConnection();
+        XAResource res1 = xaCon1.getXAResource();
+        res1.start(xid, XAResource.TMNOFLAGS);
+
+        //nested enlistment in same branch on same thread
+        XAConnection xaCon2 = ds.getXAConnection();
+        if (xaCon2.getConnection() != xaCon1.getConnection())
+            TestUtil.assertError("Connection of active branch not shared");
+        XAResource res2 = xaCon2.getXAResource();
+        if (!res1.isSameRM(res2)) TestUtil.assertError("Shared XAResource not same resource manager");
+        res2.start(new TestXid(1), XAResource.TMJOIN);
+        res2.end(xid, XAResource.TMSUCCESS);
+        xaCon2.close();
+        if (xaCon1.getConnection().isClosed()) TestUtil.assertError("Shared connection closed by other proxy");
+
+        res1.end(xid, XAResource.TMSUCCESS);
+        res1.commit(xid, true);
+        if (!"[start, end, commit]".equals(xaCalls.toString()))
+            TestUtil.assertError("XAResource calls expect value:%s,actual value:%s", "[start, end, commit]", xaCalls.toString());
+
+        //branch ended,a new XaConnection uses other connection
+        XAConnection xaCon3 = ds.getXAConnection();
+        if (xaCon3.getConnection() == xaCon1.getConnection())
+            TestUtil.assertError("Connection shared after branch ended");
+        xaCon3.close();
+        xaCon1.close();
+        if (ds.getPoolMonitorVo().getUsingSize() != 0)
+            TestUtil.assertError("Using size expect value:%s,actual value:%s", 0, ds.getPoolMonitorVo().getUsingSize());
+    }
+
+    public void testRawXaConnectionClosed() throws Exception {
+        XAConnection xaCon = ds.getXAConnection();
+        xaCon.getXAResource();
+        xaCon.close();
+        int closeCount = xaConCloseCount.get();
+        ds.clearAllConnections(true);
+        if (xaConCloseCount.get() <= closeCount) TestUtil.assertError("Raw XAConnection not closed on connection removal");
+    }
+
+    private static final class TestXid implements Xid {
+        private final int id;
+
+        TestXid(int id) {
+            this.id = id;
+        }
+
+        public int getFormatId() {
+            return 1;
+        }
+
+        public byte[] getGlobalTransactionId() {
+            return new byte[]{(byte) id};
+        }
+
+        public byte[] getBranchQualifier() {
+            return new byte[]{1};
+        }
+    }
+}